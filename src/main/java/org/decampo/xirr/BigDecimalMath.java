@@ -0,0 +1,79 @@
+package org.decampo.xirr;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+
+/**
+ * Exponential and logarithm of {@link BigDecimal} values to a given precision,
+ * for the verification of results computed in double arithmetic.
+ */
+final class BigDecimalMath {
+    private BigDecimalMath() {
+    }
+
+    /**
+     * The exponential of the given value.
+     * @param x the exponent
+     * @param mc the precision of the result
+     * @return e raised to the power x
+     */
+    static BigDecimal exp(final BigDecimal x, final MathContext mc) {
+        if (x.signum() == 0) {
+            return BigDecimal.ONE;
+        }
+        // Halve the argument until it is small, sum the Taylor series and
+        // square the result back.  Each squaring may double the relative
+        // error, so work with extra digits.
+        int halvings = 0;
+        BigDecimal reduced = x;
+        while (reduced.abs().compareTo(BigDecimal.ONE.movePointLeft(2)) > 0) {
+            reduced = reduced.divide(BigDecimal.valueOf(2));
+            halvings++;
+        }
+        final MathContext work = new MathContext(
+            mc.getPrecision() + halvings / 3 + 10, RoundingMode.HALF_EVEN);
+        final BigDecimal epsilon = BigDecimal.ONE.movePointLeft(work.getPrecision());
+        BigDecimal sum = BigDecimal.ONE;
+        BigDecimal term = BigDecimal.ONE;
+        for (int k = 1; term.abs().compareTo(epsilon) > 0; k++) {
+            term = term.multiply(reduced, work).divide(BigDecimal.valueOf(k), work);
+            sum = sum.add(term, work);
+        }
+        for (int i = 0; i < halvings; i++) {
+            sum = sum.multiply(sum, work);
+        }
+        return sum.round(mc);
+    }
+
+    /**
+     * The natural logarithm of the given value.
+     * @param y the value, must be positive
+     * @param mc the precision of the result
+     * @return the natural logarithm of y
+     * @throws IllegalArgumentException if y is not positive
+     */
+    static BigDecimal log(final BigDecimal y, final MathContext mc) {
+        if (y.signum() <= 0) {
+            throw new IllegalArgumentException("Logarithm requires a positive value: " + y);
+        }
+        if (y.compareTo(BigDecimal.ONE) == 0) {
+            return BigDecimal.ZERO;
+        }
+        final MathContext work = new MathContext(mc.getPrecision() + 10, RoundingMode.HALF_EVEN);
+        final BigDecimal epsilon = BigDecimal.ONE.movePointLeft(mc.getPrecision() + 5);
+        // Halley's method on exp(z) - y from the double approximation; each
+        // iteration triples the number of correct digits
+        BigDecimal z = new BigDecimal(Math.log(y.doubleValue()));
+        for (int i = 0; i < 20; i++) {
+            final BigDecimal e = exp(z, work);
+            final BigDecimal step = BigDecimal.valueOf(2).multiply(y.subtract(e), work)
+                .divide(y.add(e), work);
+            z = z.add(step, work);
+            if (step.abs().compareTo(epsilon.multiply(z.abs().max(BigDecimal.ONE))) <= 0) {
+                break;
+            }
+        }
+        return z.round(mc);
+    }
+}
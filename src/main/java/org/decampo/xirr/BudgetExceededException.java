@@ -0,0 +1,48 @@
+package org.decampo.xirr;
+
+/**
+ * Indicates the algorithm was stopped before converging because its time
+ * limit elapsed or it was cancelled.  The best candidate found so far, i.e.
+ * the one with the smallest residual, is available via the getters.
+ * @see NewtonRaphson.Builder#withTimeLimit(java.time.Duration)
+ * @see NewtonRaphson.Builder#withCancellationToken(CancellationToken)
+ */
+public class BudgetExceededException extends NonconvergenceException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final NewtonRaphson.Result result;
+
+    BudgetExceededException(double guess, NewtonRaphson.Result result) {
+        super("Newton-Raphson stopped after " + result.getIterations()
+            + " iterations: " + result.getStatus(),
+            guess, result.getIterations());
+        this.result = result;
+    }
+
+    /**
+     * Get the best candidate found before the algorithm was stopped.
+     * @return the candidate with the smallest residual
+     */
+    public double getCandidate() {
+        return result.getCandidate();
+    }
+
+    /**
+     * Get the residual of the best candidate, i.e. the difference between the
+     * function value at the candidate and the target.
+     * @return the residual of the best candidate
+     */
+    public double getResidual() {
+        return result.getResidual();
+    }
+
+    /**
+     * Get the reason the algorithm was stopped.
+     * @return {@link NewtonRaphson.Status#TIME_LIMIT} or
+     *         {@link NewtonRaphson.Status#CANCELLED}
+     */
+    public NewtonRaphson.Status getStatus() {
+        return result.getStatus();
+    }
+}
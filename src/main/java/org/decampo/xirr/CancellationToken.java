@@ -0,0 +1,25 @@
+package org.decampo.xirr;
+
+/**
+ * Allows a running {@link NewtonRaphson} calculation to be abandoned from
+ * another thread.  The token is checked once per iteration.
+ * @see NewtonRaphson.Builder#withCancellationToken(CancellationToken)
+ */
+public class CancellationToken {
+    private volatile boolean cancelled;
+
+    /**
+     * Request cancellation of any calculation using this token.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Whether cancellation has been requested.
+     * @return whether cancellation has been requested
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+}
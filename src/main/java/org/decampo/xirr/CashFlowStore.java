@@ -0,0 +1,283 @@
+package org.decampo.xirr;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Off-heap storage for a large number of series of transactions, from which
+ * rates of return may be computed without rehydrating {@link Transaction}
+ * instances.
+ * <p>
+ * Each series is stored as cash flows: the amounts on each day combined and
+ * the days in ascending order.  The number of days and the first epoch day
+ * are written as variable length integers, followed by the differences
+ * between consecutive days (usually one or two bytes each), followed by the
+ * amounts as packed doubles.  The encoded series are appended to segments of
+ * direct memory allocated with {@link ByteBuffer#allocateDirect(int)}; the
+ * heap holds only the location of each series, eight bytes per series.  A
+ * series larger than a segment is given a segment of its own.
+ * <p>
+ * Only days are stored, so transactions constructed from an instant, whose
+ * time of day affects the rate, are rejected rather than silently truncated
+ * to their day; compute those with {@link Xirr} directly.
+ * <p>
+ * Series are identified by the order in which they were added, starting at
+ * zero.  Adding series is not thread-safe; once all the series are added the
+ * store may be read from any number of threads.
+ * <p>
+ * Example usage:
+ * <code>
+ *     CashFlowStore store = CashFlowStore.builder().build();
+ *     int id = store.add(transactions);
+ *     double rate = store.xirr(id);
+ * </code>
+ * @see Xirr
+ */
+public class CashFlowStore {
+    private static final int DEFAULT_SEGMENT_SIZE = 64 << 20;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /**
+     * Convenience method for getting an instance of a {@link Builder}.
+     * @return new Builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private final int segmentSize;
+    private final DayCountConvention convention;
+    private final List<ByteBuffer> segments = new ArrayList<>();
+    /** The location of each series: the segment index in the upper 32 bits
+     * and the offset within the segment in the lower 32 bits. */
+    private long[] locations = new long[INITIAL_CAPACITY];
+    private int size;
+    private long bytes;
+
+    private CashFlowStore(int segmentSize, DayCountConvention convention) {
+        this.segmentSize = segmentSize;
+        this.convention = convention;
+    }
+
+    /**
+     * Add a series of transactions.
+     * @param txs the transactions
+     * @return the identifier of the series
+     * @throws IllegalArgumentException if any transaction is intraday
+     */
+    public int add(final Collection<Transaction> txs) {
+        for (Transaction tx : txs) {
+            if (tx.intraday) {
+                throw new IllegalArgumentException(
+                    "Intraday transactions cannot be stored: " + tx.getInstant());
+            }
+        }
+        return add(CashFlows.of(txs));
+    }
+
+    /**
+     * Add a series given as parallel arrays of epoch days and amounts, without
+     * constructing {@link Transaction} instances.  Amounts on the same day are
+     * combined.
+     * @param epochDays the days of the transactions, in ascending order
+     * @param amounts the amounts of the transactions
+     * @return the identifier of the series
+     * @throws IllegalArgumentException if the arrays differ in length or the
+     *                                  days are not in ascending order
+     */
+    public int add(final long[] epochDays, final double[] amounts) {
+        return add(CashFlows.of(epochDays, amounts));
+    }
+
+    private int add(final CashFlows flows) {
+        final int n = flows.size();
+        int length = varintLength(n) + Double.BYTES * n;
+        if (n > 0) {
+            length += varintLength(zigzag(flows.days[0]));
+            for (int i = 1; i < n; i++) {
+                length += varintLength(flows.days[i] - flows.days[i - 1]);
+            }
+        }
+        final ByteBuffer segment = segmentFor(length);
+        if (size == locations.length) {
+            locations = Arrays.copyOf(locations, 2 * size);
+        }
+        locations[size] = (long) (segments.size() - 1) << 32 | segment.position();
+        writeVarint(segment, n);
+        if (n > 0) {
+            writeVarint(segment, zigzag(flows.days[0]));
+            for (int i = 1; i < n; i++) {
+                writeVarint(segment, flows.days[i] - flows.days[i - 1]);
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            segment.putDouble(flows.amounts[i]);
+        }
+        bytes += length;
+        return size++;
+    }
+
+    private ByteBuffer segmentFor(final int length) {
+        final ByteBuffer last = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+        if (last != null && last.remaining() >= length) {
+            return last;
+        }
+        final ByteBuffer segment = ByteBuffer.allocateDirect(Math.max(segmentSize, length))
+            .order(ByteOrder.nativeOrder());
+        segments.add(segment);
+        return segment;
+    }
+
+    /**
+     * The number of series in the store.
+     * @return the number of series
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * The number of bytes of direct memory occupied by the encoded series,
+     * excluding the unused remainder of the segments.
+     * @return the number of bytes used
+     */
+    public long bytes() {
+        return bytes;
+    }
+
+    /**
+     * Calculates the irregular rate of return of the given series.
+     * @param series the identifier of the series
+     * @return the irregular rate of return of the series
+     * @throws IndexOutOfBoundsException if there is no such series
+     * @throws IllegalArgumentException if the series is invalid
+     * @see Xirr#xirr()
+     */
+    public double xirr(final int series) {
+        return toXirr(series).xirr();
+    }
+
+    /**
+     * Create an {@link Xirr} instance for the given series, decoding it
+     * directly into the arrays used by the instance.  The store keeps only
+     * the net amount on each day, so the {@link Xirr#analytics() analytics}
+     * of the instance use net daily amounts.
+     * @param series the identifier of the series
+     * @return the Xirr instance
+     * @throws IndexOutOfBoundsException if there is no such series
+     * @throws IllegalArgumentException if the series is invalid
+     */
+    public Xirr toXirr(final int series) {
+        return new Xirr(read(series), null, null, convention);
+    }
+
+    /**
+     * Decode the given series.
+     */
+    CashFlows read(final int series) {
+        if (series < 0 || series >= size) {
+            throw new IndexOutOfBoundsException("No such series: " + series);
+        }
+        final ByteBuffer segment = segments.get((int) (locations[series] >>> 32));
+        final int[] position = {(int) locations[series]};
+        final int n = (int) readVarint(segment, position);
+        final long[] days = new long[n];
+        final double[] amounts = new double[n];
+        if (n > 0) {
+            days[0] = unzigzag(readVarint(segment, position));
+            for (int i = 1; i < n; i++) {
+                days[i] = days[i - 1] + readVarint(segment, position);
+            }
+        }
+        int offset = position[0];
+        for (int i = 0; i < n; i++, offset += Double.BYTES) {
+            amounts[i] = segment.getDouble(offset);
+        }
+        return new CashFlows(days, amounts);
+    }
+
+    private static long zigzag(final long value) {
+        return value << 1 ^ value >> 63;
+    }
+
+    private static long unzigzag(final long value) {
+        return value >>> 1 ^ -(value & 1);
+    }
+
+    private static int varintLength(long value) {
+        int length = 1;
+        while ((value >>>= 7) != 0) {
+            length++;
+        }
+        return length;
+    }
+
+    private static void writeVarint(final ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) (value & 0x7F | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    /**
+     * Read a variable length integer with absolute gets, so that reads do not
+     * disturb the position of the segment and may proceed concurrently.
+     */
+    private static long readVarint(final ByteBuffer buffer, final int[] position) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get(position[0]++);
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    /**
+     * Builder for {@link CashFlowStore} instances.
+     */
+    public static class Builder {
+        private int segmentSize = DEFAULT_SEGMENT_SIZE;
+        private DayCountConvention convention = DayCountConvention.ACT_365;
+
+        public Builder() {
+        }
+
+        /**
+         * Set the size in bytes of each segment of direct memory.  The default
+         * is 64 MiB.
+         * @param segmentSize the segment size
+         * @return this builder
+         * @throws IllegalArgumentException if the segment size is not positive
+         */
+        public Builder withSegmentSize(int segmentSize) {
+            if (segmentSize <= 0) {
+                throw new IllegalArgumentException("Segment size must be positive: " + segmentSize);
+            }
+            this.segmentSize = segmentSize;
+            return this;
+        }
+
+        /**
+         * Use the given day count convention.  The default is
+         * {@link DayCountConvention#ACT_365}.
+         * @param convention the day count convention
+         * @return this builder
+         */
+        public Builder withDayCountConvention(DayCountConvention convention) {
+            this.convention = convention;
+            return this;
+        }
+
+        public CashFlowStore build() {
+            return new CashFlowStore(segmentSize, convention);
+        }
+    }
+}
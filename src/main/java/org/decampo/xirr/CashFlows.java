@@ -0,0 +1,154 @@
+package org.decampo.xirr;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A compact, immutable representation of a series of transactions: the
+ * distinct days of the transactions in ascending order along with the
+ * combined amount on each day.  The time of day of transactions
+ * constructed from an instant is not kept.
+ */
+class CashFlows {
+    static final CashFlows EMPTY = new CashFlows(new long[0], new double[0]);
+
+    /** Distinct epoch days of the transactions, in ascending order. */
+    final long[] days;
+    /** Combined amount of the transactions on each day. */
+    final double[] amounts;
+
+    /**
+     * Wrap the given arrays, which must already be compact: the days distinct
+     * and in ascending order.
+     */
+    CashFlows(long[] days, double[] amounts) {
+        this.days = days;
+        this.amounts = amounts;
+    }
+
+    /**
+     * Sort the given transactions and combine the amounts on each day.
+     * @param txs the transactions
+     * @return the cash flows of the transactions
+     */
+    static CashFlows of(final Collection<Transaction> txs) {
+        final Transaction[] sorted = txs.toArray(new Transaction[0]);
+        Arrays.sort(sorted, Comparator.comparing(Transaction::getWhen));
+        final long[] days = new long[sorted.length];
+        final double[] amounts = new double[sorted.length];
+        int n = -1;
+        for (Transaction tx : sorted) {
+            final long day = tx.when.toEpochDay();
+            if (n < 0 || days[n] != day) {
+                days[++n] = day;
+            }
+            amounts[n] += tx.amount;
+        }
+        return new CashFlows(
+            Arrays.copyOf(days, n + 1), Arrays.copyOf(amounts, n + 1));
+    }
+
+    /**
+     * Combine the amounts on each day of the given parallel arrays.
+     * @param days the epoch days, in ascending order
+     * @param amounts the amount on each day
+     * @return the cash flows
+     * @throws IllegalArgumentException if the arrays differ in length or the
+     *                                  days are not in ascending order
+     */
+    static CashFlows of(final long[] days, final double[] amounts) {
+        if (days.length != amounts.length) {
+            throw new IllegalArgumentException(
+                "Days and amounts must have the same length");
+        }
+        final long[] compactDays = new long[days.length];
+        final double[] compactAmounts = new double[days.length];
+        int n = -1;
+        for (int i = 0; i < days.length; i++) {
+            if (n >= 0 && days[i] < compactDays[n]) {
+                throw new IllegalArgumentException(
+                    "Days must be in ascending order: " + days[i]);
+            } else if (n < 0 || compactDays[n] != days[i]) {
+                compactDays[++n] = days[i];
+            }
+            compactAmounts[n] += amounts[i];
+        }
+        return new CashFlows(
+            Arrays.copyOf(compactDays, n + 1), Arrays.copyOf(compactAmounts, n + 1));
+    }
+
+    /**
+     * Merge the given cash flows, combining the amounts on common days.  The
+     * cash flows are merged pairwise in a balanced fashion, so the cost is
+     * proportional to the total length times the logarithm of the number of
+     * cash flows.
+     * @param flows the cash flows to merge
+     * @return the merged cash flows
+     */
+    static CashFlows merge(final List<CashFlows> flows) {
+        switch (flows.size()) {
+            case 0:
+                return EMPTY;
+            case 1:
+                return flows.get(0);
+            default:
+                final int mid = flows.size() / 2;
+                return merge(flows.subList(0, mid))
+                    .merge(merge(flows.subList(mid, flows.size())));
+        }
+    }
+
+    /**
+     * Merge these cash flows with the other, combining the amounts on common
+     * days.
+     * @param other the other cash flows
+     * @return the merged cash flows
+     */
+    CashFlows merge(final CashFlows other) {
+        if (other.size() == 0) {
+            return this;
+        } else if (size() == 0) {
+            return other;
+        }
+        final long[] mergedDays = new long[size() + other.size()];
+        final double[] mergedAmounts = new double[mergedDays.length];
+        int i = 0;
+        int j = 0;
+        int n = 0;
+        while (i < size() || j < other.size()) {
+            if (j == other.size() || i < size() && days[i] < other.days[j]) {
+                mergedDays[n] = days[i];
+                mergedAmounts[n++] = amounts[i++];
+            } else if (i == size() || other.days[j] < days[i]) {
+                mergedDays[n] = other.days[j];
+                mergedAmounts[n++] = other.amounts[j++];
+            } else {
+                mergedDays[n] = days[i];
+                mergedAmounts[n++] = amounts[i++] + other.amounts[j++];
+            }
+        }
+        return new CashFlows(
+            Arrays.copyOf(mergedDays, n), Arrays.copyOf(mergedAmounts, n));
+    }
+
+    int size() {
+        return days.length;
+    }
+
+    /**
+     * Summarize these cash flows in the manner of {@link XirrDetails}.  The
+     * deposits and end withdrawals are those of the net amount on each day,
+     * since the gross amounts are not kept.
+     * @return the details of these cash flows
+     */
+    XirrDetails details() {
+        final XirrDetails details = new XirrDetails();
+        for (int i = 0; i < size(); i++) {
+            details.accumulateSorted(amounts[i], days[i] * Transaction.MILLIS_PER_DAY, false);
+        }
+        details.finish();
+        return details;
+    }
+}
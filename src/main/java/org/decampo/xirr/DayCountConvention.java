@@ -0,0 +1,118 @@
+package org.decampo.xirr;
+
+/**
+ * Determines the fraction of a year between two days, e.g. for the purpose of
+ * computing the present value of a {@link Transaction}.  Days are given as
+ * epoch days, see {@link java.time.LocalDate#toEpochDay()}.
+ * <p>
+ * Implementations must be thread-safe.  The bulk method
+ * {@link #yearFractions(long[], int, int, long, double[])} is used by
+ * {@link Xirr} to compute the year fractions of all the transactions at once;
+ * implementations may override it with a more efficient version.
+ * @see Xirr.Builder#withDayCountConvention(DayCountConvention)
+ */
+public interface DayCountConvention {
+    /** Actual number of days over 365 (ACT/365 Fixed), the default. */
+    DayCountConvention ACT_365 = actual(365);
+    /** Actual number of days over 360 (ACT/360). */
+    DayCountConvention ACT_360 = actual(360);
+    /**
+     * Actual number of days over the actual number of days in each year
+     * (ACT/ACT ISDA).  The days in a leap year count for 1/366 of a year and
+     * the other days for 1/365.
+     */
+    DayCountConvention ACT_ACT = new DayCountConventions.ActualActual();
+    /**
+     * Every month has 30 days and every year 360 days (30/360 US bond
+     * basis).  A start on the 31st is treated as the 30th, as is an end on
+     * the 31st when the start is the 30th or 31st.
+     */
+    DayCountConvention THIRTY_360 = new DayCountConventions.Thirty360();
+
+    /**
+     * Actual number of days over a fixed number of days per year.
+     * @param daysInYear the number of days per year
+     * @return the day count convention
+     * @throws IllegalArgumentException if daysInYear is not positive
+     */
+    static DayCountConvention actual(double daysInYear) {
+        return new DayCountConventions.Actual(daysInYear);
+    }
+
+    /**
+     * The fraction of a year from the start day to the end day.
+     * @param startEpochDay the start day
+     * @param endEpochDay the end day
+     * @return the fraction of a year between the days, negative if the end
+     *         precedes the start
+     */
+    double yearFraction(long startEpochDay, long endEpochDay);
+
+    /**
+     * Compute the year fractions from each of the given start days to the
+     * given end day.  The default implementation reuses the previous result
+     * when consecutive start days are equal, which is common in sorted input.
+     * @param startEpochDays the start days
+     * @param from the index of the first start day, inclusive
+     * @param to the index of the last start day, exclusive
+     * @param endEpochDay the end day
+     * @param fractions receives the year fraction for each start day at the
+     *                  same index
+     */
+    default void yearFractions(
+        long[] startEpochDays,
+        int from,
+        int to,
+        long endEpochDay,
+        double[] fractions) {
+        for (int i = from; i < to; i++) {
+            fractions[i] = i > from && startEpochDays[i] == startEpochDays[i - 1]
+                ? fractions[i - 1]
+                : yearFraction(startEpochDays[i], endEpochDay);
+        }
+    }
+
+    /**
+     * The fraction of a year from the start instant to the end instant, given
+     * as milliseconds since the epoch.  The default implementation measures
+     * whole days, discarding the time of day in UTC; the
+     * {@link #actual(double) actual} conventions measure fractional days.
+     * @param startEpochMilli the start instant
+     * @param endEpochMilli the end instant
+     * @return the fraction of a year between the instants, negative if the
+     *         end precedes the start
+     */
+    default double yearFractionEpochMilli(long startEpochMilli, long endEpochMilli) {
+        return yearFraction(
+            Math.floorDiv(startEpochMilli, Transaction.MILLIS_PER_DAY),
+            Math.floorDiv(endEpochMilli, Transaction.MILLIS_PER_DAY));
+    }
+
+    /**
+     * Compute the year fractions from each of the given start instants to
+     * the given end instant in the manner of
+     * {@link #yearFractionEpochMilli(long, long)}.
+     * @param startEpochMillis the start instants
+     * @param from the index of the first start instant, inclusive
+     * @param to the index of the last start instant, exclusive
+     * @param endEpochMilli the end instant
+     * @param fractions receives the year fraction for each start instant at
+     *                  the same index
+     */
+    default void yearFractionsEpochMilli(
+        long[] startEpochMillis,
+        int from,
+        int to,
+        long endEpochMilli,
+        double[] fractions) {
+        final long endEpochDay = Math.floorDiv(endEpochMilli, Transaction.MILLIS_PER_DAY);
+        long previous = 0;
+        for (int i = from; i < to; i++) {
+            final long day = Math.floorDiv(startEpochMillis[i], Transaction.MILLIS_PER_DAY);
+            fractions[i] = i > from && day == previous
+                ? fractions[i - 1]
+                : yearFraction(day, endEpochDay);
+            previous = day;
+        }
+    }
+}
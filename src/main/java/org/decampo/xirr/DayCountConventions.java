@@ -0,0 +1,199 @@
+package org.decampo.xirr;
+
+import java.time.LocalDate;
+import java.time.Year;
+
+/**
+ * Implementations of the standard {@link DayCountConvention}s.
+ */
+final class DayCountConventions {
+    /**
+     * Prefix of the identifiers of conventions other than the built-in ones,
+     * which cannot be recreated from their identifier.
+     */
+    static final String CUSTOM = "custom:";
+
+    private DayCountConventions() {
+    }
+
+    /**
+     * A stable identifier of the given convention, from which
+     * {@link #forIdentifier(String)} recreates the built-in conventions.
+     * @param convention the convention
+     * @return the identifier of the convention
+     */
+    static String identifier(final DayCountConvention convention) {
+        if (convention instanceof Actual) {
+            return "ACT/" + ((Actual) convention).daysInYear;
+        } else if (convention instanceof ActualActual) {
+            return "ACT/ACT";
+        } else if (convention instanceof Thirty360) {
+            return "30/360";
+        }
+        return CUSTOM + convention;
+    }
+
+    /**
+     * The built-in convention with the given identifier, as returned by
+     * {@link #identifier(DayCountConvention)}.  The full names in the
+     * documentation of the built-in conventions, e.g. "ACT/ACT ISDA", are
+     * accepted as well.
+     * @param identifier the identifier
+     * @return the convention, or <code>null</code> if the identifier is not
+     *         that of a built-in convention
+     */
+    static DayCountConvention forIdentifier(final String identifier) {
+        switch (identifier) {
+            case "ACT/ACT":
+            case "ACT/ACT ISDA":
+                return DayCountConvention.ACT_ACT;
+            case "30/360":
+            case "30/360 US":
+                return DayCountConvention.THIRTY_360;
+            case "ACT/365 Fixed":
+                return DayCountConvention.ACT_365;
+            default:
+                if (identifier.startsWith("ACT/")) {
+                    try {
+                        final double daysInYear = Double.parseDouble(identifier.substring(4));
+                        return daysInYear > 0 ? DayCountConvention.actual(daysInYear) : null;
+                    } catch (NumberFormatException e) {
+                        // Fall through
+                    }
+                }
+                return null;
+        }
+    }
+
+    /**
+     * Actual number of days over a fixed number of days per year.
+     */
+    static final class Actual implements DayCountConvention {
+        final double daysInYear;
+
+        Actual(double daysInYear) {
+            if (!(daysInYear > 0)) {
+                throw new IllegalArgumentException("Days in year must be positive: " + daysInYear);
+            }
+            this.daysInYear = daysInYear;
+        }
+
+        @Override
+        public double yearFraction(long startEpochDay, long endEpochDay) {
+            return (endEpochDay - startEpochDay) / daysInYear;
+        }
+
+        @Override
+        public void yearFractions(
+            long[] startEpochDays,
+            int from,
+            int to,
+            long endEpochDay,
+            double[] fractions) {
+            for (int i = from; i < to; i++) {
+                fractions[i] = (endEpochDay - startEpochDays[i]) / daysInYear;
+            }
+        }
+
+        @Override
+        public double yearFractionEpochMilli(long startEpochMilli, long endEpochMilli) {
+            return (endEpochMilli - startEpochMilli) / (Transaction.MILLIS_PER_DAY * daysInYear);
+        }
+
+        @Override
+        public void yearFractionsEpochMilli(
+            long[] startEpochMillis,
+            int from,
+            int to,
+            long endEpochMilli,
+            double[] fractions) {
+            final double millisInYear = Transaction.MILLIS_PER_DAY * daysInYear;
+            for (int i = from; i < to; i++) {
+                fractions[i] = (endEpochMilli - startEpochMillis[i]) / millisInYear;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "ACT/" + daysInYear;
+        }
+    }
+
+    /**
+     * ACT/ACT ISDA.
+     */
+    static final class ActualActual implements DayCountConvention {
+        @Override
+        public double yearFraction(long startEpochDay, long endEpochDay) {
+            if (endEpochDay < startEpochDay) {
+                return -yearFraction(endEpochDay, startEpochDay);
+            }
+            final LocalDate start = LocalDate.ofEpochDay(startEpochDay);
+            final LocalDate end = LocalDate.ofEpochDay(endEpochDay);
+            return fraction(startEpochDay, start.getYear(), end.getYear())
+                - fraction(endEpochDay, end.getYear(), end.getYear());
+        }
+
+        @Override
+        public void yearFractions(
+            long[] startEpochDays,
+            int from,
+            int to,
+            long endEpochDay,
+            double[] fractions) {
+            // The part of the computation depending on the end day is the
+            // same for every start day
+            final int endYear = LocalDate.ofEpochDay(endEpochDay).getYear();
+            final double endFraction = fraction(endEpochDay, endYear, endYear);
+            for (int i = from; i < to; i++) {
+                final long start = startEpochDays[i];
+                if (i > from && start == startEpochDays[i - 1]) {
+                    fractions[i] = fractions[i - 1];
+                } else if (endEpochDay < start) {
+                    fractions[i] = -yearFraction(endEpochDay, start);
+                } else {
+                    fractions[i] = fraction(start,
+                        LocalDate.ofEpochDay(start).getYear(), endYear)
+                        - endFraction;
+                }
+            }
+        }
+
+        /**
+         * The fraction of a year from the given day in the given year to the
+         * start of the year following <code>lastYear</code>.
+         */
+        private static double fraction(long epochDay, int year, int lastYear) {
+            final long next = LocalDate.of(year + 1, 1, 1).toEpochDay();
+            return (next - epochDay) / (Year.isLeap(year) ? 366.0 : 365.0)
+                + (lastYear - year);
+        }
+
+        @Override
+        public String toString() {
+            return "ACT/ACT";
+        }
+    }
+
+    /**
+     * 30/360 US bond basis.
+     */
+    static final class Thirty360 implements DayCountConvention {
+        @Override
+        public double yearFraction(long startEpochDay, long endEpochDay) {
+            final LocalDate start = LocalDate.ofEpochDay(startEpochDay);
+            final LocalDate end = LocalDate.ofEpochDay(endEpochDay);
+            final int startDay = Math.min(start.getDayOfMonth(), 30);
+            final int endDay = end.getDayOfMonth() == 31 && startDay == 30
+                ? 30 : end.getDayOfMonth();
+            return (360 * (end.getYear() - start.getYear())
+                + 30 * (end.getMonthValue() - start.getMonthValue())
+                + (endDay - startDay)) / 360.0;
+        }
+
+        @Override
+        public String toString() {
+            return "30/360";
+        }
+    }
+}
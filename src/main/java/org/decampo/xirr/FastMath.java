@@ -0,0 +1,36 @@
+package org.decampo.xirr;
+
+/**
+ * Cheap approximations of elementary functions, accurate to roughly single
+ * precision, for use where a solution is refined with full precision
+ * afterwards.
+ */
+final class FastMath {
+    private static final double LOG2_E = 1.4426950408889634;
+    private static final double LN_2 = 0.6931471805599453;
+
+    private FastMath() {
+    }
+
+    /**
+     * Approximate <i>e</i><sup><code>x</code></sup> with a relative error
+     * below 4e-6.  The argument is reduced to <i>x</i> =
+     * <i>k</i> <i>ln</i>(2) + <i>f</i> with |<i>f</i>| &le; <i>ln</i>(2)/2,
+     * <i>e</i><sup><i>f</i></sup> is approximated by its Taylor polynomial
+     * of degree 5 and the result is scaled by 2<sup><i>k</i></sup> by
+     * constructing the exponent bits directly.  Arguments whose result would
+     * be subnormal or overflow, and NaN, fall back to {@link Math#exp(double)}.
+     * @param x the exponent
+     * @return approximately <i>e</i><sup><code>x</code></sup>
+     */
+    static double exp(final double x) {
+        if (!(-708 < x && x < 709)) {
+            return Math.exp(x);
+        }
+        final double k = Math.rint(x * LOG2_E);
+        final double f = x - k * LN_2;
+        final double p = 1 + f * (1 + f * (1.0 / 2 + f * (1.0 / 6
+            + f * (1.0 / 24 + f * (1.0 / 120)))));
+        return p * Double.longBitsToDouble(((long) k + 1023) << 52);
+    }
+}
@@ -1,5 +1,6 @@
 package org.decampo.xirr;
 
+import java.time.Duration;
 import java.util.function.DoubleUnaryOperator;
 
 /**
@@ -18,8 +19,26 @@ import java.util.function.DoubleUnaryOperator;
  * has been successful.  If the value of the function at the candidate input
  * is within the <code>tolerance</code> of the desired target value, the
  * method terminates.
+ * <p>
+ * Alternatively, a <code>relativeTolerance</code> may be given, in which case
+ * the method terminates when the value is within <code>relativeTolerance</code>
+ * times the <code>scale</code> (or the magnitude of the target, if no scale is
+ * given) of the target.  A <code>stepTolerance</code> may also be given, in
+ * which case the method terminates once a step changes the candidate by less
+ * than <code>stepTolerance</code>; the function is evaluated once more at the
+ * final candidate so that its residual is known.
+ * <p>
+ * Optionally, a <code>timeLimit</code> bounds the elapsed time of each
+ * calculation and a {@link CancellationToken} allows a calculation to be
+ * abandoned from another thread.  Both are checked once per iteration.  When
+ * either stops the method, {@link #solve(double, double)} returns the best
+ * candidate found so far along with its residual.
+ * <p>
+ * As a {@link RootFinder}, an instance may also be applied to any
+ * {@link RootFinder.Evaluator} with the same settings, in which case the
+ * function and derivative of the instance are not used.
  */
-public class NewtonRaphson {
+public class NewtonRaphson implements RootFinder {
     /** Default tolerance. */
     public static final double TOLERANCE = 0.000_000_1;
 
@@ -31,10 +50,14 @@ public class NewtonRaphson {
         return new Builder();
     }
 
-    private final DoubleUnaryOperator func;
-    private final DoubleUnaryOperator derivative;
+    private final RootFinder.Evaluator functions;
     private final double tolerance;
     private final long iterations;
+    private final double relativeTolerance;
+    private final double scale;
+    private final double stepTolerance;
+    private final long timeLimit;
+    private final CancellationToken token;
 
     /**
      * Construct an instance of the NewtonRaphson method for masochists who
@@ -49,10 +72,37 @@ public class NewtonRaphson {
         DoubleUnaryOperator derivative,
         double tolerance,
         long iterations) {
-        this.func = func;
-        this.derivative = derivative;
+        this(func, derivative, tolerance, iterations, 0, 0, 0, 0, null);
+    }
+
+    private NewtonRaphson(
+        DoubleUnaryOperator func,
+        DoubleUnaryOperator derivative,
+        double tolerance,
+        long iterations,
+        double relativeTolerance,
+        double scale,
+        double stepTolerance,
+        long timeLimit,
+        CancellationToken token) {
+        this.functions = new RootFinder.Evaluator() {
+            @Override
+            public double value(double x) {
+                return func.applyAsDouble(x);
+            }
+
+            @Override
+            public double derivative(double x) {
+                return derivative.applyAsDouble(x);
+            }
+        };
         this.tolerance = tolerance;
         this.iterations = iterations;
+        this.relativeTolerance = relativeTolerance;
+        this.scale = scale;
+        this.stepTolerance = stepTolerance;
+        this.timeLimit = timeLimit;
+        this.token = token;
     }
 
     /**
@@ -84,9 +134,163 @@ public class NewtonRaphson {
      * @throws OverflowException when a value involved is infinite or NaN
      * @throws NonconvergenceException if the method fails to converge in the
      *                                 given number of iterations
+     * @throws BudgetExceededException if the time limit elapses or the
+     *                                 calculation is cancelled
      */
     public double inverse(final double target, final double guess) {
-        return new Calculation().solve(guess, target);
+        return inverse(functions, target, guess);
+    }
+
+    /**
+     * Find a root of the function given by the evaluator, starting at the
+     * given guess, with the settings of this instance.
+     * @param evaluator the function and its derivative
+     * @param guess the value to start at
+     * @return an input to the function which yields zero within the given
+     *         tolerance
+     * @throws ZeroValuedDerivativeException if the derivative is 0 while
+     *                                       executing the Newton-Raphson method
+     * @throws OverflowException when a value involved is infinite or NaN
+     * @throws NonconvergenceException if the method fails to converge in the
+     *                                 given number of iterations
+     * @throws BudgetExceededException if the time limit elapses or the
+     *                                 calculation is cancelled
+     * @see #inverse(double, double)
+     */
+    @Override
+    public double findRoot(final RootFinder.Evaluator evaluator, final double guess) {
+        return inverse(evaluator, 0, guess);
+    }
+
+    private double inverse(
+        final RootFinder.Evaluator evaluator,
+        final double target,
+        final double guess) {
+        final Result result = solve(evaluator, target, guess);
+        switch (result.getStatus()) {
+            case CONVERGED:
+                return result.getCandidate();
+            case ITERATIONS_EXHAUSTED:
+                throw new NonconvergenceException(guess, iterations);
+            default:
+                throw new BudgetExceededException(guess, result);
+        }
+    }
+
+    /**
+     * Like {@link #inverse(double, double)}, but rather than throwing an
+     * exception when the method runs out of iterations or time, or is
+     * cancelled, returns the best candidate found so far (the one with the
+     * smallest residual).
+     * @param target the target value of the function
+     * @param guess value to start the algorithm with
+     * @return the result of the calculation
+     * @throws ZeroValuedDerivativeException if the derivative is 0 while
+     *                                       executing the Newton-Raphson method
+     * @throws OverflowException when a value involved is infinite or NaN
+     */
+    public Result solve(final double target, final double guess) {
+        return solve(functions, target, guess);
+    }
+
+    /**
+     * Like {@link #solve(double, double)}, for the function given by the
+     * evaluator.
+     * @param evaluator the function and its derivative
+     * @param target the target value of the function
+     * @param guess value to start the algorithm with
+     * @return the result of the calculation
+     * @throws ZeroValuedDerivativeException if the derivative is 0 while
+     *                                       executing the Newton-Raphson method
+     * @throws OverflowException when a value involved is infinite or NaN
+     */
+    public Result solve(
+        final RootFinder.Evaluator evaluator,
+        final double target,
+        final double guess) {
+        return new Calculation(evaluator).solve(guess, target);
+    }
+
+    /**
+     * The reason a calculation stopped.
+     */
+    public enum Status {
+        /** The function value at the candidate is within the tolerance. */
+        CONVERGED,
+        /** The maximum number of iterations was reached. */
+        ITERATIONS_EXHAUSTED,
+        /** The time limit elapsed. */
+        TIME_LIMIT,
+        /** The calculation was cancelled via its {@link CancellationToken}. */
+        CANCELLED
+    }
+
+    /**
+     * The outcome of a calculation: the best candidate found along with its
+     * residual.
+     */
+    public static class Result {
+        private final double candidate;
+        private final double residual;
+        private final long iterations;
+        private final Status status;
+
+        Result(double candidate, double residual, long iterations, Status status) {
+            this.candidate = candidate;
+            this.residual = residual;
+            this.iterations = iterations;
+            this.status = status;
+        }
+
+        /**
+         * The best candidate found, i.e. the one with the smallest residual.
+         * @return the best candidate found
+         */
+        public double getCandidate() {
+            return candidate;
+        }
+
+        /**
+         * The difference between the function value at the candidate and the
+         * target.
+         * @return the residual of the candidate
+         */
+        public double getResidual() {
+            return residual;
+        }
+
+        /**
+         * The number of iterations performed.
+         * @return the number of iterations performed
+         */
+        public long getIterations() {
+            return iterations;
+        }
+
+        /**
+         * The reason the calculation stopped.
+         * @return the reason the calculation stopped
+         */
+        public Status getStatus() {
+            return status;
+        }
+
+        /**
+         * Whether the candidate is within the tolerance of the target.
+         * @return whether the calculation converged
+         */
+        public boolean isConverged() {
+            return status == Status.CONVERGED;
+        }
+
+        @Override
+        public String toString() {
+            return '{'
+                + "candidate=" + candidate
+                + ", residual=" + residual
+                + ", iterations=" + iterations
+                + ", status=" + status + '}';
+        }
     }
 
     /**
@@ -98,6 +302,11 @@ public class NewtonRaphson {
         private DoubleUnaryOperator derivative;
         private double tolerance = TOLERANCE;
         private long iterations = 10_000;
+        private double relativeTolerance = 0;
+        private double scale = 0;
+        private double stepTolerance = 0;
+        private long timeLimit = 0;
+        private CancellationToken token;
 
         public Builder() {
         }
@@ -122,8 +331,84 @@ public class NewtonRaphson {
             return this;
         }
 
+        /**
+         * Use a tolerance relative to the scale (or the magnitude of the
+         * target, if no scale is given) in place of the absolute tolerance.
+         * @param relativeTolerance the relative tolerance, or 0 to use the
+         *                          absolute tolerance
+         * @return this builder
+         * @see #withScale(double)
+         */
+        public Builder withRelativeTolerance(double relativeTolerance) {
+            this.relativeTolerance = relativeTolerance;
+            return this;
+        }
+
+        /**
+         * The typical magnitude of the function values, used with the relative
+         * tolerance.
+         * @param scale the scale
+         * @return this builder
+         * @see #withRelativeTolerance(double)
+         */
+        public Builder withScale(double scale) {
+            this.scale = scale;
+            return this;
+        }
+
+        /**
+         * Terminate once a step changes the candidate by less than the given
+         * amount.
+         * @param stepTolerance the step tolerance, or 0 to disable
+         * @return this builder
+         */
+        public Builder withStepTolerance(double stepTolerance) {
+            this.stepTolerance = stepTolerance;
+            return this;
+        }
+
+        /**
+         * Bound the elapsed time of each calculation.  The time is checked once
+         * per iteration, using {@link System#nanoTime()}.
+         * @param timeLimit the time limit, or null for no limit
+         * @return this builder
+         */
+        public Builder withTimeLimit(Duration timeLimit) {
+            this.timeLimit = timeLimit != null ? timeLimit.toNanos() : 0;
+            return this;
+        }
+
+        /**
+         * Allow calculations to be abandoned via the given token.
+         * @param token the cancellation token, or null
+         * @return this builder
+         */
+        public Builder withCancellationToken(CancellationToken token) {
+            this.token = token;
+            return this;
+        }
+
+        /**
+         * A new builder with the same settings as this one, which may then be
+         * changed without affecting this one.
+         */
+        Builder copy() {
+            final Builder copy = new Builder();
+            copy.func = func;
+            copy.derivative = derivative;
+            copy.tolerance = tolerance;
+            copy.iterations = iterations;
+            copy.relativeTolerance = relativeTolerance;
+            copy.scale = scale;
+            copy.stepTolerance = stepTolerance;
+            copy.timeLimit = timeLimit;
+            copy.token = token;
+            return copy;
+        }
+
         public NewtonRaphson build() {
-            return new NewtonRaphson(func, derivative, tolerance, iterations);
+            return new NewtonRaphson(func, derivative, tolerance, iterations,
+                relativeTolerance, scale, stepTolerance, timeLimit, token);
         }
 
         /**
@@ -138,12 +423,17 @@ public class NewtonRaphson {
     }
 
     class Calculation {
+        private final RootFinder.Evaluator evaluator;
         private double guess;
         private long i; // persistent loop counter
         private double candidate;
         private double value;
         private Double derivativeValue;
 
+        Calculation(RootFinder.Evaluator evaluator) {
+            this.evaluator = evaluator;
+        }
+
         public double getGuess() {
             return guess;
         }
@@ -201,19 +491,47 @@ public class NewtonRaphson {
                 + ", derivative=" + derivativeValue + '}';
         }
 
-        double solve(double guess, double target) {
+        Result solve(double guess, double target) {
             setGuess(guess);
             setCandidate(guess);
+            final long deadline = System.nanoTime() + timeLimit;
+            final double threshold = threshold(target);
+            double best = guess;
+            double bestValue = Double.NaN;
+            boolean smallStep = false;
             for (i = 0; i < iterations; i++) {
-                setValue(func.applyAsDouble(candidate) - target);
-                if (Math.abs(value) < tolerance) {
-                    return candidate;
+                setValue(evaluator.value(candidate) - target);
+                if (!(Math.abs(bestValue) <= Math.abs(value))) {
+                    best = candidate;
+                    bestValue = value;
+                }
+                if (Math.abs(value) < threshold || smallStep) {
+                    return new Result(candidate, value, i + 1, Status.CONVERGED);
+                } else if (token != null && token.isCancelled()) {
+                    return new Result(best, bestValue, i + 1, Status.CANCELLED);
+                } else if (timeLimit > 0 && System.nanoTime() - deadline >= 0) {
+                    return new Result(best, bestValue, i + 1, Status.TIME_LIMIT);
                 } else {
-                    setDerivativeValue(derivative.applyAsDouble(candidate));
-                    setCandidate(candidate - value / derivativeValue);
+                    setDerivativeValue(evaluator.derivative(candidate));
+                    final double step = value / derivativeValue;
+                    setCandidate(candidate - step);
+                    smallStep = Math.abs(step) < stepTolerance;
+                }
+            }
+            return new Result(best, bestValue, iterations, Status.ITERATIONS_EXHAUSTED);
+        }
+
+        /**
+         * The bound on the residual for the method to terminate.
+         */
+        private double threshold(double target) {
+            if (relativeTolerance > 0) {
+                final double magnitude = scale > 0 ? scale : Math.abs(target);
+                if (magnitude > 0) {
+                    return relativeTolerance * magnitude;
                 }
             }
-            throw new NonconvergenceException(guess, iterations);
+            return tolerance;
         }
     }
 }
@@ -16,8 +16,12 @@ public class NonconvergenceException extends IllegalArgumentException {
     private final long iterations;
 
     public NonconvergenceException(double guess, long iterations) {
-        super("Newton-Raphson failed to converge within " + iterations
-            + " iterations.");
+        this("Newton-Raphson failed to converge within " + iterations
+            + " iterations.", guess, iterations);
+    }
+
+    NonconvergenceException(String message, double guess, long iterations) {
+        super(message);
         this.initialGuess = guess;
         this.iterations = iterations;
     }
@@ -0,0 +1,77 @@
+package org.decampo.xirr;
+
+/**
+ * Evaluates the present value of amounts over years and its derivative in a
+ * single pass, sharing one exponentiation per amount, and remembers the
+ * derivative for the rate of the latest evaluation.  Used by {@link Xirr}
+ * and, with the amounts replaced for each scenario, by {@link XirrScenarios}.
+ * Optionally approximates the exponentiation with {@link FastMath#exp(double)}
+ * for rates above -100%.
+ */
+final class PresentValueEvaluator implements RootFinder.Evaluator {
+    private final double[] years;
+    private final boolean fast;
+    private double[] amounts;
+    private double rate = Double.NaN;
+    private double derivative;
+
+    PresentValueEvaluator(double[] amounts, double[] years) {
+        this(amounts, years, false);
+    }
+
+    PresentValueEvaluator(double[] amounts, double[] years, boolean fast) {
+        this.amounts = amounts;
+        this.years = years;
+        this.fast = fast;
+    }
+
+    /**
+     * Evaluate the given amounts from now on, over the same years.
+     */
+    void reset(final double[] amounts) {
+        this.amounts = amounts;
+        rate = Double.NaN;
+    }
+
+    @Override
+    public double value(final double x) {
+        double value = 0;
+        if (!(-1 < x)) {
+            rate = Double.NaN;
+            for (int i = 0; i < amounts.length; i++) {
+                value += Xirr.Investment.presentValue(amounts[i], years[i], x);
+            }
+            return value;
+        }
+        final double log = Math.log1p(x);
+        double slope = 0;
+        if (fast) {
+            for (int i = 0; i < amounts.length; i++) {
+                final double term = amounts[i] * FastMath.exp(years[i] * log);
+                value += term;
+                slope += term * years[i];
+            }
+        } else {
+            for (int i = 0; i < amounts.length; i++) {
+                final double term = amounts[i] * Math.exp(years[i] * log);
+                value += term;
+                slope += term * years[i];
+            }
+        }
+        rate = x;
+        derivative = slope / (1 + x);
+        return value;
+    }
+
+    @Override
+    public double derivative(final double x) {
+        if (x == rate) {
+            return derivative;
+        }
+        double sum = 0;
+        for (int i = 0; i < amounts.length; i++) {
+            sum += Xirr.Investment.derivative(amounts[i], years[i], x);
+        }
+        return sum;
+    }
+}
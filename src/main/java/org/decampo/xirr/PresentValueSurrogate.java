@@ -0,0 +1,346 @@
+package org.decampo.xirr;
+
+/**
+ * A piecewise polynomial approximation of the present value of an
+ * {@link Xirr} instance over an interval of rates, for answering many queries
+ * on the same series without summing over the transactions each time.
+ * <p>
+ * The interval is divided into pieces of equal width in <i>log</i>(1 + rate),
+ * on which the present value is a smooth sum of exponentials, and the present
+ * value is interpolated on each piece by a Chebyshev polynomial of fixed
+ * degree.  Locating the piece and evaluating its polynomial costs the same
+ * regardless of the number of transactions.  The pieces are doubled until
+ * the error bound meets the requested tolerance, or stops improving, or the
+ * number of pieces reaches 1024.
+ * <p>
+ * The error bound is that of Chebyshev interpolation: on a piece of half
+ * width <i>h</i> in <i>u</i> = <i>log</i>(1 + rate) the error is at most
+ * <i>h</i><sup>n+1</sup> / (2<sup>n</sup> (n + 1)!) times the largest
+ * derivative of order <i>n</i> + 1 of the present value, where <i>n</i> is
+ * the degree.  Since the present value is the sum of
+ * <i>a</i> <i>e</i><sup><i>y</i> <i>u</i></sup> over the transactions, that
+ * derivative is at most the sum of
+ * |<i>a</i>| |<i>y</i>|<sup>n+1</sup> <i>e</i><sup><i>y</i> <i>u</i></sup>
+ * with <i>u</i> at whichever end of the piece is larger, which is summed
+ * alongside the interpolation nodes.  To this is added a first order bound
+ * on the rounding of the present values at the nodes and of the polynomial,
+ * proportional to the sum of the magnitudes of the terms; that part is an
+ * estimate in the usual sense of floating point error analysis rather than
+ * a proof.  Outside the interval the present value is evaluated exactly.
+ * <p>
+ * Rates are found with the Newton-Raphson method and convergence criteria
+ * configured for the Xirr instance.  Those found by {@link #rateFor(double)}
+ * are polished with the exact present value, which takes one or two
+ * iterations from the estimate of the approximation.  The approximation itself is immutable, but since it refers
+ * to the Xirr instance it shares that instance's lack of thread-safety.
+ * @see Xirr#surrogate(double, double)
+ */
+public class PresentValueSurrogate {
+    /** The degree of the polynomial on each piece. */
+    static final int DEGREE = 16;
+    /** The largest number of pieces. */
+    static final int MAX_PIECES = 1024;
+    /** 1 / (2<sup>DEGREE</sup> (DEGREE + 1)!), of the interpolation error. */
+    private static final double REMAINDER;
+    /** The rounding error relative to the sum of the magnitudes of the terms. */
+    private static final double ROUNDING = 16 * (DEGREE + 1) * Math.ulp(1.0);
+
+    static {
+        double remainder = 1;
+        for (int k = 1; k <= DEGREE + 1; k++) {
+            remainder /= k;
+        }
+        REMAINDER = Math.scalb(remainder, -DEGREE);
+    }
+
+    private final Xirr xirr;
+    private final double lower;
+    private final double upper;
+    /** The interval in <i>log</i>(1 + rate). */
+    private final double start;
+    private final double end;
+    private final int pieces;
+    private final double width;
+    /** The Chebyshev coefficients of each piece, DEGREE + 1 per piece. */
+    private final double[] coefficients;
+    /** The coefficients of the derivative with respect to log(1 + rate). */
+    private final double[] derivatives;
+    private final double errorBound;
+
+    /**
+     * Construct the approximation of the present value of the given instance.
+     * @param xirr the instance
+     * @param lower the lower end of the interval, must be greater than -100%
+     * @param upper the upper end of the interval
+     * @param tolerance the desired absolute error bound
+     * @throws IllegalArgumentException if the interval is invalid
+     */
+    PresentValueSurrogate(Xirr xirr, double lower, double upper, double tolerance) {
+        if (!(-1 < lower && lower < upper && Double.isFinite(upper))) {
+            throw new IllegalArgumentException(
+                "Invalid interval: [" + lower + ", " + upper + "]");
+        }
+        this.xirr = xirr;
+        this.lower = lower;
+        this.upper = upper;
+        start = Math.log1p(lower);
+        end = Math.log1p(upper);
+        Fit fit = new Fit(xirr, start, end, 1);
+        while (fit.errorBound > tolerance && fit.pieces < MAX_PIECES) {
+            final Fit finer = new Fit(xirr, start, end, 2 * fit.pieces);
+            if (!(finer.errorBound < fit.errorBound / 2)) {
+                // The error is dominated by rounding in the present value
+                // itself, finer pieces will not help
+                fit = finer.errorBound < fit.errorBound ? finer : fit;
+                break;
+            }
+            fit = finer;
+        }
+        pieces = fit.pieces;
+        width = (end - start) / pieces;
+        coefficients = fit.coefficients;
+        derivatives = fit.derivatives;
+        errorBound = fit.errorBound;
+    }
+
+    /**
+     * The lower end of the interval of rates.
+     * @return the lower end of the interval
+     */
+    public double getLower() {
+        return lower;
+    }
+
+    /**
+     * The upper end of the interval of rates.
+     * @return the upper end of the interval
+     */
+    public double getUpper() {
+        return upper;
+    }
+
+    /**
+     * The number of pieces into which the interval is divided.
+     * @return the number of pieces
+     */
+    public int getPieces() {
+        return pieces;
+    }
+
+    /**
+     * The bound on the absolute difference between
+     * {@link #presentValue(double)} and {@link Xirr#presentValue(double)}
+     * within the interval.
+     * @return the error bound
+     */
+    public double getErrorBound() {
+        return errorBound;
+    }
+
+    /**
+     * The approximate present value under the given rate, within
+     * {@link #getErrorBound()} of the exact value inside the interval and
+     * exact outside it.
+     * @param rate the rate of return
+     * @return the present value under the given rate
+     */
+    public double presentValue(final double rate) {
+        final double u = Math.log1p(rate);
+        final int piece = piece(u);
+        if (piece < 0) {
+            return xirr.presentValue(rate);
+        }
+        return clenshaw(coefficients, piece, position(u, piece));
+    }
+
+    /**
+     * The derivative of the approximate present value under the given rate,
+     * exact outside the interval.
+     * @param rate the rate of return
+     * @return the derivative of the present value under the given rate
+     */
+    public double derivative(final double rate) {
+        final double u = Math.log1p(rate);
+        final int piece = piece(u);
+        if (piece < 0) {
+            return xirr.derivative(rate);
+        }
+        return clenshaw(derivatives, piece, position(u, piece)) / (1 + rate);
+    }
+
+    /**
+     * Estimate the rate for which the approximate present value is the given
+     * target, without evaluating the exact present value within the
+     * interval.  The error of the estimate is about
+     * {@link #getRateErrorBound(double)}.
+     * @param target the desired present value
+     * @return the estimated rate
+     * @throws ZeroValuedDerivativeException if the derivative is 0 while executing the Newton-Raphson method
+     * @throws NonconvergenceException if the Newton-Raphson method fails to converge
+     */
+    public double estimateRateFor(final double target) {
+        final double guess = Math.min(upper, Math.max(lower, xirr.guess()));
+        return xirr.inverse(this::presentValue, this::derivative, target, guess);
+    }
+
+    /**
+     * The error in a rate estimated by {@link #estimateRateFor(double)} which
+     * corresponds to the error bound of the present value, to first order.
+     * @param rate the estimated rate
+     * @return the bound on the error of the rate
+     */
+    public double getRateErrorBound(final double rate) {
+        return errorBound / Math.abs(derivative(rate));
+    }
+
+    /**
+     * Find the rate for which the exact present value is the given target,
+     * starting from the estimate of the approximation, or the usual guess if
+     * the approximation fails to find one.
+     * @param target the desired present value
+     * @return the rate of return yielding the target present value
+     * @throws ZeroValuedDerivativeException if the derivative is 0 while executing the Newton-Raphson method
+     * @throws NonconvergenceException if the Newton-Raphson method fails to converge
+     * @see Xirr#rateFor(double)
+     */
+    public double rateFor(final double target) {
+        double estimate;
+        try {
+            estimate = estimateRateFor(target);
+        } catch (ArithmeticException e) {
+            estimate = xirr.guess();
+        }
+        return xirr.rateFor(target, estimate);
+    }
+
+    /**
+     * The piece containing the given log(1 + rate), or -1 if outside the
+     * interval.
+     */
+    private int piece(final double u) {
+        if (!(start <= u && u <= end)) {
+            return -1;
+        }
+        return Math.min(pieces - 1, (int) ((u - start) / width));
+    }
+
+    /** The position of the given log(1 + rate) within its piece, in [-1, 1]. */
+    private double position(final double u, final int piece) {
+        return 2 * (u - start - piece * width) / width - 1;
+    }
+
+    /**
+     * Evaluate the Chebyshev series of the given piece at the given position.
+     */
+    private static double clenshaw(final double[] c, final int piece, final double t) {
+        final int offset = piece * (DEGREE + 1);
+        double b1 = 0;
+        double b2 = 0;
+        for (int j = DEGREE; j >= 1; j--) {
+            final double b = 2 * t * b1 - b2 + c[offset + j];
+            b2 = b1;
+            b1 = b;
+        }
+        return t * b1 - b2 + c[offset];
+    }
+
+    /**
+     * The interpolants at a given number of pieces, with their error bound.
+     */
+    private static final class Fit {
+        final int pieces;
+        final double[] coefficients;
+        final double[] derivatives;
+        double errorBound;
+
+        Fit(Xirr xirr, double start, double end, int pieces) {
+            this.pieces = pieces;
+            final int n = DEGREE + 1;
+            final double width = (end - start) / pieces;
+            // The interpolation nodes of every piece, evaluated in a single
+            // sweep over the transactions
+            final double[] rates = new double[pieces * n];
+            for (int p = 0; p < pieces; p++) {
+                final double middle = start + (p + 0.5) * width;
+                for (int k = 0; k < n; k++) {
+                    rates[p * n + k] = Math.expm1(
+                        middle + width / 2 * Math.cos(Math.PI * (k + 0.5) / n));
+                }
+            }
+            final double[] values = xirr.presentValues(rates);
+            coefficients = new double[pieces * n];
+            derivatives = new double[pieces * n];
+            for (int p = 0; p < pieces; p++) {
+                final int offset = p * n;
+                for (int j = 0; j < n; j++) {
+                    double sum = 0;
+                    for (int k = 0; k < n; k++) {
+                        sum += values[offset + k] * Math.cos(Math.PI * j * (k + 0.5) / n);
+                    }
+                    coefficients[offset + j] = (j == 0 ? 1.0 : 2.0) / n * sum;
+                }
+                // Differentiate the series, then scale from the position in
+                // the piece to log(1 + rate)
+                double next = 0;
+                double nextNext = 0;
+                for (int j = DEGREE; j >= 1; j--) {
+                    final double d = nextNext + 2 * j * coefficients[offset + j];
+                    derivatives[offset + j - 1] = d;
+                    nextNext = next;
+                    next = d;
+                }
+                derivatives[offset] /= 2;
+                for (int j = 0; j < n; j++) {
+                    derivatives[offset + j] *= 2 / width;
+                }
+                errorBound = Math.max(errorBound,
+                    bound(xirr.amounts(), xirr.years(), start + p * width, width));
+            }
+        }
+
+        /**
+         * The bound on the error of the interpolant on the piece starting at
+         * the given log(1 + rate).  The terms are scaled by the largest
+         * exponent so that the sums do not overflow before the present value
+         * itself would.
+         */
+        private static double bound(
+            final double[] amounts,
+            final double[] years,
+            final double from,
+            final double width) {
+            final double to = from + width;
+            double scale = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < amounts.length; i++) {
+                if (amounts[i] != 0) {
+                    scale = Math.max(scale, years[i] * (years[i] > 0 ? to : from));
+                }
+            }
+            if (scale == Double.NEGATIVE_INFINITY) {
+                return 0;
+            }
+            final double u = Math.max(Math.abs(from), Math.abs(to));
+            double derivative = 0;
+            double magnitude = 0;
+            for (int i = 0; i < amounts.length; i++) {
+                final double y = years[i];
+                final double term = Math.abs(amounts[i])
+                    * Math.exp(y * (y > 0 ? to : from) - scale);
+                derivative += term * Math.pow(Math.abs(y), DEGREE + 1);
+                // The exponential of y u is rounded relative to y u
+                magnitude += term * (1 + Math.abs(y) * u);
+            }
+            final double remainder = REMAINDER * Math.pow(width / 2, DEGREE + 1) * derivative;
+            return Math.exp(scale) * (remainder + ROUNDING * magnitude);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return '{'
+            + "lower=" + lower
+            + ", upper=" + upper
+            + ", pieces=" + pieces
+            + ", errorBound=" + errorBound + '}';
+    }
+}
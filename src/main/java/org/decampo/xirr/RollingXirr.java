@@ -0,0 +1,263 @@
+package org.decampo.xirr;
+
+import java.time.LocalDate;
+import java.time.Period;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Calculates the irregular rate of return over a trailing window of dates
+ * for each date in a series of transactions.
+ * <p>
+ * For each distinct date <i>d</i> in the series, the rate is computed for the
+ * transactions dated within [<i>d</i> - <code>window</code>, <i>d</i>].  The
+ * transactions are sorted and amounts on the same date combined once; the
+ * window then slides over the series adding and removing transactions and
+ * maintaining the totals needed to validate each window and form the initial
+ * guess incrementally.  The year fractions and the present value, however,
+ * depend on the end of each window, so they are computed over the whole
+ * window for each date: the cost is proportional to the number of dates
+ * times the number of dates in a window times the iterations per solve.
+ * Each solve is started from the rate of the previous window, which is
+ * typically close, so the iterations per solve are few.
+ * <p>
+ * Since the amounts are combined by day, intraday transactions (those with a
+ * time of day) are rejected rather than truncated to their day.
+ * <p>
+ * Windows for which no rate can be computed (e.g. because all the amounts in
+ * the window are deposits, or the method fails to converge) yield
+ * <code>NaN</code>.
+ * <p>
+ * Example usage:
+ * <code>
+ *     SortedMap&lt;LocalDate, Double&gt; rates = RollingXirr.builder()
+ *         .withWindow(Period.ofYears(1))
+ *         .withTransactions(transactions)
+ *         .xirrs();
+ * </code>
+ * @see Xirr
+ */
+public class RollingXirr {
+    /**
+     * Convenience method for getting an instance of a {@link Builder}.
+     * @return new Builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /** Distinct epoch days of the transactions, in ascending order. */
+    private final long[] days;
+    /** Combined amount of the transactions on each day. */
+    private final double[] amounts;
+    private final Period window;
+    private final DayCountConvention convention;
+    private final NewtonRaphson.Builder builder;
+
+    private RollingXirr(
+        Collection<Transaction> txs,
+        Period window,
+        NewtonRaphson.Builder builder,
+        DayCountConvention convention) {
+        if (txs == null || txs.isEmpty()) {
+            throw new IllegalArgumentException("No transactions to analyze");
+        }
+        if (window == null || window.isNegative() || window.isZero()) {
+            throw new IllegalArgumentException(
+                "Window must be positive: " + window);
+        }
+        this.window = window;
+        this.convention = convention;
+        this.builder = builder != null ? builder : NewtonRaphson.builder();
+        for (Transaction tx : txs) {
+            if (tx.intraday) {
+                throw new IllegalArgumentException(
+                    "Intraday transactions cannot be combined by day: " + tx.getInstant());
+            }
+        }
+
+        final CashFlows flows = CashFlows.of(txs);
+        days = flows.days;
+        amounts = flows.amounts;
+    }
+
+    /**
+     * Calculates the irregular rate of return over the trailing window ending
+     * on each distinct date of the transactions.
+     * @return the rate for each window, keyed by the last date of the window
+     */
+    public SortedMap<LocalDate, Double> xirrs() {
+        final SortedMap<LocalDate, Double> result = new TreeMap<>();
+        final Window w = new Window();
+        double previous = Double.NaN;
+        for (int hi = 0; hi < days.length; hi++) {
+            w.add(hi);
+            final LocalDate end = LocalDate.ofEpochDay(days[hi]);
+            final long start = end.minus(window).toEpochDay();
+            while (days[w.lo] < start) {
+                w.remove();
+            }
+            final double rate = w.xirr(previous);
+            result.put(end, rate);
+            if (!Double.isNaN(rate)) {
+                previous = rate;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The transactions within the current window, i.e. those with indices
+     * from <code>lo</code> to <code>hi</code> inclusive, along with running
+     * totals over them.
+     */
+    private class Window {
+        int lo;
+        int hi = -1;
+        double total;
+        double deposits;
+        int negative;
+        int zero;
+        int positive;
+        final double[] years = new double[amounts.length];
+
+        void add(final int index) {
+            hi = index;
+            update(amounts[index], 1);
+        }
+
+        void remove() {
+            update(amounts[lo++], -1);
+        }
+
+        private void update(final double amount, final int sign) {
+            total += sign * amount;
+            if (amount < 0) {
+                deposits -= sign * amount;
+                negative += sign;
+            } else if (amount > 0) {
+                positive += sign;
+            } else {
+                zero += sign;
+            }
+        }
+
+        double xirr(final double previous) {
+            if (hi == lo || negative == 0 || positive + zero == 0) {
+                return Double.NaN;
+            } else if (positive == 0) {
+                return -1; // Total loss
+            }
+            convention.yearFractions(days, lo, hi + 1, days[hi], years);
+            final double guess = (total / deposits) / years[lo];
+            if (!Double.isNaN(previous)) {
+                try {
+                    return solve(previous);
+                } catch (ArithmeticException | IllegalArgumentException e) {
+                    // Fall back to the usual guess below
+                }
+            }
+            try {
+                return solve(guess);
+            } catch (ArithmeticException | IllegalArgumentException e) {
+                return Double.NaN;
+            }
+        }
+
+        private double solve(final double guess) {
+            return builder.withFunction(this::presentValue)
+                .withDerivative(this::derivative)
+                .findRoot(guess);
+        }
+
+        private double presentValue(final double rate) {
+            double sum = 0;
+            for (int i = lo; i <= hi; i++) {
+                sum += Xirr.Investment.presentValue(
+                    amounts[i], years[i], rate);
+            }
+            return sum;
+        }
+
+        private double derivative(final double rate) {
+            double sum = 0;
+            for (int i = lo; i <= hi; i++) {
+                sum += Xirr.Investment.derivative(
+                    amounts[i], years[i], rate);
+            }
+            return sum;
+        }
+    }
+
+    /**
+     * Builder for {@link RollingXirr} instances.
+     */
+    public static class Builder {
+        private Collection<Transaction> transactions = null;
+        private Period window = null;
+        private NewtonRaphson.Builder builder = null;
+
+        private DayCountConvention convention = DayCountConvention.ACT_365;
+
+        public Builder() {
+        }
+
+        public Builder withTransactions(Transaction... txs) {
+            return withTransactions(Arrays.asList(txs));
+        }
+
+        public Builder withTransactions(Collection<Transaction> txs) {
+            this.transactions = txs;
+            return this;
+        }
+
+        public Builder withWindow(Period window) {
+            this.window = window;
+            return this;
+        }
+
+        public Builder withNewtonRaphsonBuilder(NewtonRaphson.Builder builder) {
+            this.builder = builder;
+            return this;
+        }
+
+        /**
+         * Use the actual number of days over the given number of days per
+         * year.
+         * @param daysInYear the number of days per year
+         * @return this builder
+         * @throws IllegalArgumentException if daysInYear is not positive
+         * @see DayCountConvention#actual(double)
+         */
+        public Builder withDaysInYear(int daysInYear) {
+            return withDayCountConvention(DayCountConvention.actual(daysInYear));
+        }
+
+        /**
+         * Use the given day count convention.  The default is
+         * {@link DayCountConvention#ACT_365}.
+         * @param convention the day count convention
+         * @return this builder
+         */
+        public Builder withDayCountConvention(DayCountConvention convention) {
+            this.convention = convention;
+            return this;
+        }
+
+        public RollingXirr build() {
+            return new RollingXirr(transactions, window, builder, convention);
+        }
+
+        /**
+         * Convenience method for building the RollingXirr instance and
+         * invoking {@link RollingXirr#xirrs()}.
+         * @return the rate for each window, keyed by the last date of the
+         *         window
+         */
+        public SortedMap<LocalDate, Double> xirrs() {
+            return build().xirrs();
+        }
+    }
+}
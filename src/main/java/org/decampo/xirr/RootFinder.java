@@ -0,0 +1,44 @@
+package org.decampo.xirr;
+
+/**
+ * A method of finding a root of a function given its value and derivative,
+ * e.g. {@link NewtonRaphson}.  Implementations may be supplied to
+ * {@link Xirr.Builder#withRootFinder(RootFinder)} to compare methods on the
+ * same transactions.
+ * <p>
+ * Implementations must be thread-safe if they are shared between threads;
+ * evaluators need not be.
+ */
+public interface RootFinder {
+
+    /**
+     * A function along with its derivative.  Implementations may evaluate
+     * both in one pass: the derivative is typically requested at the point
+     * of the latest value, and such an evaluator may remember it.
+     */
+    interface Evaluator {
+        /**
+         * The value of the function.
+         * @param x the input
+         * @return the value of the function at x
+         */
+        double value(double x);
+
+        /**
+         * The value of the derivative of the function.
+         * @param x the input
+         * @return the value of the derivative at x
+         */
+        double derivative(double x);
+    }
+
+    /**
+     * Find a root of the function starting at the given guess.
+     * @param evaluator the function and its derivative
+     * @param guess the value to start at
+     * @return an input to the function which yields zero within the
+     *         tolerance of the implementation
+     * @throws ArithmeticException if no root is found
+     */
+    double findRoot(Evaluator evaluator, double guess);
+}
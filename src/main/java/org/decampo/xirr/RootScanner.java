@@ -0,0 +1,105 @@
+package org.decampo.xirr;
+
+import java.util.Arrays;
+
+/**
+ * Enumerates the rates for which the present value of an {@link Xirr}
+ * instance is zero within an interval of rates.
+ * <p>
+ * The interval is divided into a fixed grid, uniform in <i>log</i>(1 + rate)
+ * so that the resolution is finer near -100%, and the present value is
+ * evaluated on the grid in blocks via
+ * {@link Xirr#presentValues(double[], double[], double[], boolean)}.  Each
+ * sign change brackets a root, which is refined by Newton's method
+ * safeguarded with bisection.  The scan stops as soon as the number of roots
+ * found reaches the bound given by Descartes' rule of signs.
+ * <p>
+ * Roots of even multiplicity (where the present value touches zero without
+ * changing sign) and pairs of roots closer together than the grid spacing are
+ * not detected.
+ * @see Xirr#roots(double, double)
+ */
+class RootScanner {
+    /** Number of grid points evaluated per block. */
+    private static final int BLOCK_SIZE = 64;
+    /** Upper bound on the number of refinement steps per root. */
+    private static final int MAX_REFINEMENTS = 200;
+
+    private final Xirr xirr;
+    private final int bound;
+
+    RootScanner(Xirr xirr, int bound) {
+        this.xirr = xirr;
+        this.bound = bound;
+    }
+
+    double[] scan(final double lower, final double upper, final int intervals) {
+        final double[] roots = new double[bound];
+        int found = 0;
+        if (bound == 0) {
+            return roots;
+        }
+
+        final double logLower = Math.log1p(lower);
+        final double step = (Math.log1p(upper) - logLower) / intervals;
+        final double[] rates = new double[BLOCK_SIZE];
+        final double[] values = new double[BLOCK_SIZE];
+
+        double prevRate = lower;
+        double prevValue = xirr.presentValue(lower);
+        if (prevValue == 0) {
+            roots[found++] = lower;
+        }
+        for (int start = 1; start <= intervals && found < bound; start += BLOCK_SIZE) {
+            final int count = Math.min(BLOCK_SIZE, intervals - start + 1);
+            for (int k = 0; k < count; k++) {
+                final int point = start + k;
+                rates[k] = point == intervals
+                    ? upper : Math.expm1(logLower + point * step);
+            }
+            xirr.presentValues(count == BLOCK_SIZE
+                ? rates : Arrays.copyOf(rates, count), values, null, false);
+            for (int k = 0; k < count && found < bound; k++) {
+                if (values[k] == 0) {
+                    roots[found++] = rates[k];
+                } else if (prevValue != 0
+                    && Math.signum(values[k]) != Math.signum(prevValue)) {
+                    roots[found++] = refine(prevRate, prevValue, rates[k]);
+                }
+                prevRate = rates[k];
+                prevValue = values[k];
+            }
+        }
+        return Arrays.copyOf(roots, found);
+    }
+
+    /**
+     * Refine the root bracketed by <code>lo</code> and <code>hi</code>.
+     * @param lo the lower end of the bracket
+     * @param loValue the present value at the lower end of the bracket
+     * @param hi the upper end of the bracket
+     * @return the root
+     */
+    private double refine(double lo, final double loValue, double hi) {
+        final boolean ascending = loValue < 0;
+        double x = lo + (hi - lo) / 2;
+        for (int i = 0; i < MAX_REFINEMENTS; i++) {
+            final double value = xirr.presentValue(x);
+            if (value == 0) {
+                return x;
+            } else if (value < 0 == ascending) {
+                lo = x;
+            } else {
+                hi = x;
+            }
+            if (hi - lo <= Math.ulp(x) * 4) {
+                break;
+            }
+            // Take a Newton step if it stays within the bracket, otherwise
+            // fall back to bisection
+            final double next = x - value / xirr.derivative(x);
+            x = lo < next && next < hi ? next : lo + (hi - lo) / 2;
+        }
+        return x;
+    }
+}
@@ -0,0 +1,214 @@
+package org.decampo.xirr;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The full input and trace of a solve captured by a {@link SolveRecorder}: the
+ * amounts and instants of the investments, the starting rate, the day count
+ * convention, the outcome and every candidate rate evaluated by the solver
+ * along with the value of the function at it.
+ * @see SolveReplay
+ */
+public class SolveRecord {
+    /** The outcome of a solve which found a rate. */
+    public static final String CONVERGED = "CONVERGED";
+
+    private final long timestamp;
+    private final long elapsedNanos;
+    private final boolean intraday;
+    private final long[] instants;
+    private final double[] amounts;
+    private final double guess;
+    private final String convention;
+    private final String outcome;
+    private final double rate;
+    private final double[] candidates;
+    private final double[] values;
+
+    SolveRecord(
+        long timestamp,
+        long elapsedNanos,
+        boolean intraday,
+        long[] instants,
+        double[] amounts,
+        double guess,
+        String convention,
+        String outcome,
+        double rate,
+        double[] candidates,
+        double[] values) {
+        this.timestamp = timestamp;
+        this.elapsedNanos = elapsedNanos;
+        this.intraday = intraday;
+        this.instants = instants;
+        this.amounts = amounts;
+        this.guess = guess;
+        this.convention = convention;
+        this.outcome = outcome;
+        this.rate = rate;
+        this.candidates = candidates;
+        this.values = values;
+    }
+
+    /**
+     * When the solve was recorded.
+     * @return when the solve was recorded
+     */
+    public Instant getTimestamp() {
+        return Instant.ofEpochMilli(timestamp);
+    }
+
+    /**
+     * The elapsed time of the solve.
+     * @return the elapsed time of the solve
+     */
+    public Duration getElapsed() {
+        return Duration.ofNanos(elapsedNanos);
+    }
+
+    /**
+     * Reconstruct the transactions of the solve.  Amounts on the same day
+     * appear as they were given to {@link Xirr}, which may have combined them.
+     * @return the transactions
+     */
+    public List<Transaction> getTransactions() {
+        final List<Transaction> txs = new ArrayList<>(amounts.length);
+        for (int i = 0; i < amounts.length; i++) {
+            txs.add(intraday
+                ? Transaction.ofEpochMilli(amounts[i], instants[i])
+                : new Transaction(amounts[i], LocalDate.ofEpochDay(instants[i])));
+        }
+        return txs;
+    }
+
+    /**
+     * The rate at which the solve started.
+     * @return the starting rate
+     */
+    public double getGuess() {
+        return guess;
+    }
+
+    /**
+     * The identifier of the day count convention of the solve, e.g.
+     * "ACT/365.0", "ACT/ACT" or "30/360" for the built-in conventions, or
+     * "custom:" followed by the {@link Object#toString()} of any other
+     * convention.
+     * @return the day count convention
+     */
+    public String getConvention() {
+        return convention;
+    }
+
+    /**
+     * {@link #CONVERGED} if the solve found a rate, otherwise the simple name
+     * of the exception which ended it.
+     * @return the outcome of the solve
+     */
+    public String getOutcome() {
+        return outcome;
+    }
+
+    /**
+     * The rate found.
+     * @return the rate found, or <code>NaN</code> if the solve failed
+     */
+    public double getRate() {
+        return rate;
+    }
+
+    /**
+     * The number of evaluations of the function by the solver, i.e. the
+     * iterations of the Newton-Raphson method.
+     * @return the number of evaluations
+     */
+    public int getIterations() {
+        return candidates.length;
+    }
+
+    /**
+     * The candidate rates evaluated by the solver, in order.
+     * @return the candidate rates
+     */
+    public double[] getCandidates() {
+        return candidates.clone();
+    }
+
+    /**
+     * The value of the function at each candidate rate.
+     * @return the values
+     */
+    public double[] getValues() {
+        return values.clone();
+    }
+
+    void write(final DataOutput out) throws IOException {
+        out.writeLong(timestamp);
+        out.writeLong(elapsedNanos);
+        out.writeBoolean(intraday);
+        out.writeInt(amounts.length);
+        for (int i = 0; i < amounts.length; i++) {
+            out.writeLong(instants[i]);
+            out.writeDouble(amounts[i]);
+        }
+        out.writeDouble(guess);
+        out.writeUTF(convention);
+        out.writeUTF(outcome);
+        out.writeDouble(rate);
+        out.writeInt(candidates.length);
+        for (int i = 0; i < candidates.length; i++) {
+            out.writeDouble(candidates[i]);
+            out.writeDouble(values[i]);
+        }
+    }
+
+    static SolveRecord read(final DataInput in) throws IOException {
+        final long timestamp = in.readLong();
+        final long elapsedNanos = in.readLong();
+        final boolean intraday = in.readBoolean();
+        final int n = in.readInt();
+        final long[] instants = new long[n];
+        final double[] amounts = new double[n];
+        for (int i = 0; i < n; i++) {
+            instants[i] = in.readLong();
+            amounts[i] = in.readDouble();
+        }
+        final double guess = in.readDouble();
+        final String convention = in.readUTF();
+        final String outcome = in.readUTF();
+        final double rate = in.readDouble();
+        final int m = in.readInt();
+        final double[] candidates = new double[m];
+        final double[] values = new double[m];
+        for (int i = 0; i < m; i++) {
+            candidates[i] = in.readDouble();
+            values[i] = in.readDouble();
+        }
+        return new SolveRecord(timestamp, elapsedNanos, intraday, instants, amounts,
+            guess, convention, outcome, rate, candidates, values);
+    }
+
+    @Override
+    public String toString() {
+        return '{'
+            + "timestamp=" + getTimestamp()
+            + ", transactions=" + amounts.length
+            + ", guess=" + guess
+            + ", outcome=" + outcome
+            + ", rate=" + rate
+            + ", iterations=" + candidates.length
+            + ", elapsed=" + getElapsed()
+            + ", last=" + (candidates.length > 0
+                ? Arrays.toString(new double[] {
+                    candidates[candidates.length - 1], values[values.length - 1]})
+                : "[]") + '}';
+    }
+}
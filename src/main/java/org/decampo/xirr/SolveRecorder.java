@@ -0,0 +1,429 @@
+package org.decampo.xirr;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Opt-in recorder of expensive solves, see
+ * {@link Xirr.Builder#withRecorder(SolveRecorder)}.  When a solve of
+ * {@link Xirr#xirr()} takes more than a number of iterations or an amount of
+ * time, or ends in an exception, its full input and the trace of the solver
+ * are captured as a {@link SolveRecord} so that it may be reproduced offline
+ * with {@link SolveReplay}.
+ * <p>
+ * Records are written to a rotating binary log in a directory: the current
+ * file is <code>solves.bin</code>, and once it exceeds the maximum size it is
+ * renamed to <code>solves.bin.1</code>, the previous <code>solves.bin.1</code>
+ * to <code>solves.bin.2</code> and so on, the oldest being deleted.
+ * Each record is framed by its length and a checksum: a record cut short by
+ * a crash is truncated when the log is next opened, and ends the log when
+ * read.  Alternatively the records may be passed to any consumer.
+ * <p>
+ * Instances are thread-safe.  Recording never fails a solve: records which
+ * cannot be written are dropped and counted.
+ */
+public class SolveRecorder {
+    /** The name of the current log file. */
+    public static final String FILE_NAME = "solves.bin";
+
+    private static final int MAGIC = 0x58495252; // "XIRR"
+    private static final int VERSION = 2;
+    /** The magic number and version. */
+    private static final int HEADER_LENGTH = 8;
+    /** The length and checksum preceding each record. */
+    private static final int FRAME_LENGTH = 12;
+    private static final long DEFAULT_ITERATIONS = 100;
+    private static final long DEFAULT_MAX_FILE_SIZE = 64 << 20;
+    private static final int DEFAULT_MAX_FILES = 4;
+
+    /**
+     * Convenience method for getting an instance of a {@link Builder}.
+     * @return new Builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private final long iterations;
+    private final long nanos;
+    private final boolean failures;
+    private final Consumer<SolveRecord> sink;
+    private final AtomicLong recorded = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    private SolveRecorder(long iterations, long nanos, boolean failures, Consumer<SolveRecord> sink) {
+        this.iterations = iterations;
+        this.nanos = nanos;
+        this.failures = failures;
+        this.sink = sink;
+    }
+
+    /**
+     * The number of solves recorded.
+     * @return the number of solves recorded
+     */
+    public long getRecorded() {
+        return recorded.get();
+    }
+
+    /**
+     * The number of records which could not be written.
+     * @return the number of records dropped
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Start tracing a solve.
+     */
+    Trace trace() {
+        return new Trace();
+    }
+
+    /**
+     * Record the traced solve if it exceeded a threshold or failed.
+     */
+    void completed(
+        final Trace trace,
+        final long[] instants,
+        final double[] amounts,
+        final boolean intraday,
+        final DayCountConvention convention,
+        final double guess,
+        final double rate,
+        final RuntimeException failure) {
+        final long elapsed = System.nanoTime() - trace.start;
+        if (trace.size <= iterations && (nanos <= 0 || elapsed <= nanos)
+            && (failure == null || !failures)) {
+            return;
+        }
+        final SolveRecord record = new SolveRecord(
+            System.currentTimeMillis(), elapsed, intraday,
+            instants.clone(), amounts.clone(), guess, DayCountConventions.identifier(convention),
+            failure == null ? SolveRecord.CONVERGED : failure.getClass().getSimpleName(),
+            failure == null ? rate : Double.NaN,
+            Arrays.copyOf(trace.candidates, trace.size),
+            Arrays.copyOf(trace.values, trace.size));
+        try {
+            sink.accept(record);
+            recorded.incrementAndGet();
+        } catch (RuntimeException e) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    /**
+     * Read the records of a log file.  A record cut short, e.g. by a crash
+     * while it was written, ends the log.
+     * @param file the log file
+     * @return the records
+     * @throws IOException if the file cannot be read or is not a log file
+     */
+    public static List<SolveRecord> read(final Path file) throws IOException {
+        final List<SolveRecord> records = new ArrayList<>();
+        if (scan(file, records) < 0) {
+            throw new IOException("Not a solve log: " + file);
+        }
+        return records;
+    }
+
+    /**
+     * Read the complete records of a log file.  Each record is framed by its
+     * length and checksum, so that a partial or corrupt record is detected
+     * rather than misread.
+     * @param file the log file
+     * @param records receives the records, may be null
+     * @return the length of the header and the complete records, or -1 if
+     *         the file does not start with the header of this version
+     */
+    private static long scan(final Path file, final List<SolveRecord> records) throws IOException {
+        final long size = Files.size(file);
+        try (InputStream stream = Files.newInputStream(file);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(stream))) {
+            if (size < HEADER_LENGTH || in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return -1;
+            }
+            long position = HEADER_LENGTH;
+            final CRC32 crc = new CRC32();
+            while (size - position >= FRAME_LENGTH) {
+                final int length = in.readInt();
+                final long checksum = in.readLong();
+                if (length < 0 || length > size - position - FRAME_LENGTH) {
+                    break;
+                }
+                final byte[] bytes = new byte[length];
+                in.readFully(bytes);
+                crc.reset();
+                crc.update(bytes, 0, length);
+                if (crc.getValue() != checksum) {
+                    break;
+                }
+                if (records != null) {
+                    records.add(SolveRecord.read(
+                        new DataInputStream(new ByteArrayInputStream(bytes))));
+                }
+                position += FRAME_LENGTH + length;
+            }
+            return position;
+        }
+    }
+
+    /**
+     * The candidate rates evaluated during a solve and the values at them.
+     */
+    final class Trace {
+        final long start = System.nanoTime();
+        double[] candidates = new double[16];
+        double[] values = new double[16];
+        int size;
+
+        void add(final double candidate, final double value) {
+            if (size == candidates.length) {
+                candidates = Arrays.copyOf(candidates, 2 * size);
+                values = Arrays.copyOf(values, 2 * size);
+            }
+            candidates[size] = candidate;
+            values[size++] = value;
+        }
+
+        RootFinder.Evaluator wrap(final RootFinder.Evaluator evaluator) {
+            return new RootFinder.Evaluator() {
+                @Override
+                public double value(double x) {
+                    final double value = evaluator.value(x);
+                    add(x, value);
+                    return value;
+                }
+
+                @Override
+                public double derivative(double x) {
+                    return evaluator.derivative(x);
+                }
+            };
+        }
+    }
+
+    /**
+     * Appends records to a rotating set of files.
+     */
+    private static final class RotatingLog implements Consumer<SolveRecord> {
+        private final Path directory;
+        private final long maxFileSize;
+        private final int maxFiles;
+        private DataOutputStream out;
+        private long size;
+
+        RotatingLog(Path directory, long maxFileSize, int maxFiles) {
+            this.directory = directory;
+            this.maxFileSize = maxFileSize;
+            this.maxFiles = maxFiles;
+        }
+
+        @Override
+        public synchronized void accept(final SolveRecord record) {
+            try {
+                if (out == null) {
+                    open();
+                }
+                final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                record.write(new DataOutputStream(bytes));
+                final CRC32 crc = new CRC32();
+                crc.update(bytes.toByteArray(), 0, bytes.size());
+                out.writeInt(bytes.size());
+                out.writeLong(crc.getValue());
+                bytes.writeTo(out);
+                out.flush();
+                size += FRAME_LENGTH + bytes.size();
+                if (size >= maxFileSize) {
+                    out.close();
+                    out = null;
+                    rotate();
+                }
+            } catch (IOException e) {
+                if (out != null) {
+                    try {
+                        out.close();
+                    } catch (IOException suppressed) {
+                        e.addSuppressed(suppressed);
+                    }
+                    out = null;
+                }
+                throw new IllegalStateException("Unable to write solve log", e);
+            }
+        }
+
+        /**
+         * Open the current log file for appending, first truncating any
+         * partial record left by a crash.  A file which is not a log of this
+         * version is rotated away.
+         */
+        private void open() throws IOException {
+            Files.createDirectories(directory);
+            final Path file = directory.resolve(FILE_NAME);
+            // A file shorter than the header was cut short before any record
+            long valid = Files.exists(file) && Files.size(file) >= HEADER_LENGTH
+                ? scan(file, null) : 0;
+            if (valid < 0) {
+                rotate();
+                valid = 0;
+            }
+            if (valid > 0) {
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                    channel.truncate(valid);
+                }
+            }
+            out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(
+                file, StandardOpenOption.CREATE, valid > 0
+                    ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING)));
+            size = valid;
+            if (valid == 0) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                size = HEADER_LENGTH;
+            }
+        }
+
+        private void rotate() throws IOException {
+            Files.deleteIfExists(directory.resolve(FILE_NAME + "." + maxFiles));
+            for (int i = maxFiles - 1; i >= 1; i--) {
+                final Path from = directory.resolve(FILE_NAME + "." + i);
+                if (Files.exists(from)) {
+                    Files.move(from, directory.resolve(FILE_NAME + "." + (i + 1)),
+                        StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            Files.move(directory.resolve(FILE_NAME), directory.resolve(FILE_NAME + ".1"),
+                StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Builder for {@link SolveRecorder} instances.
+     */
+    public static class Builder {
+        private long iterations = DEFAULT_ITERATIONS;
+        private Duration time = null;
+        private boolean failures = true;
+        private Path directory = null;
+        private long maxFileSize = DEFAULT_MAX_FILE_SIZE;
+        private int maxFiles = DEFAULT_MAX_FILES;
+        private Consumer<SolveRecord> sink = null;
+
+        public Builder() {
+        }
+
+        /**
+         * Record solves taking more than the given number of iterations.  The
+         * default is 100.
+         * @param iterations the iteration threshold
+         * @return this builder
+         */
+        public Builder withIterationThreshold(long iterations) {
+            this.iterations = iterations;
+            return this;
+        }
+
+        /**
+         * Record solves taking longer than the given time.  By default the
+         * time is not considered.
+         * @param time the time threshold, or null to ignore the time
+         * @return this builder
+         */
+        public Builder withTimeThreshold(Duration time) {
+            this.time = time;
+            return this;
+        }
+
+        /**
+         * Whether to record solves ending in an exception regardless of the
+         * thresholds.  The default is true.
+         * @param failures whether to record failed solves
+         * @return this builder
+         */
+        public Builder withFailures(boolean failures) {
+            this.failures = failures;
+            return this;
+        }
+
+        /**
+         * Write the records to a rotating log in the given directory, which is
+         * created if necessary.
+         * @param directory the directory of the log
+         * @return this builder
+         */
+        public Builder withDirectory(Path directory) {
+            this.directory = directory;
+            return this;
+        }
+
+        /**
+         * Set the size in bytes beyond which the log is rotated.  The default
+         * is 64 MiB.
+         * @param maxFileSize the maximum size of a log file
+         * @return this builder
+         */
+        public Builder withMaxFileSize(long maxFileSize) {
+            this.maxFileSize = maxFileSize;
+            return this;
+        }
+
+        /**
+         * Set the number of rotated log files kept in addition to the current
+         * one.  The default is 4.
+         * @param maxFiles the number of rotated files to keep
+         * @return this builder
+         * @throws IllegalArgumentException if the number is not positive
+         */
+        public Builder withMaxFiles(int maxFiles) {
+            if (maxFiles <= 0) {
+                throw new IllegalArgumentException("Max files must be positive: " + maxFiles);
+            }
+            this.maxFiles = maxFiles;
+            return this;
+        }
+
+        /**
+         * Pass the records to the given consumer rather than a log.
+         * @param sink the consumer of the records, must be thread-safe if
+         *             solves are recorded from several threads
+         * @return this builder
+         */
+        public Builder withSink(Consumer<SolveRecord> sink) {
+            this.sink = sink;
+            return this;
+        }
+
+        /**
+         * Construct the recorder.
+         * @return the recorder
+         * @throws IllegalArgumentException if neither a directory nor a sink
+         *                                  was given
+         */
+        public SolveRecorder build() {
+            if (sink == null && directory == null) {
+                throw new IllegalArgumentException("A directory or a sink is required");
+            }
+            return new SolveRecorder(iterations, time != null ? time.toNanos() : 0, failures,
+                sink != null ? sink : new RotatingLog(directory, maxFileSize, maxFiles));
+        }
+    }
+}
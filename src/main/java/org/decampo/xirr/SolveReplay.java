@@ -0,0 +1,186 @@
+package org.decampo.xirr;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+/**
+ * Re-runs the solves captured by a {@link SolveRecorder} against any solver
+ * configuration, e.g. to profile a change to the solver on the series which
+ * were slow in production.
+ * <p>
+ * Usage: <code>SolveReplay log...</code> prints each record of the given log
+ * files followed by its replay with the defaults, log space evaluation and
+ * the fast approximation.  Records of solves with custom day count
+ * conventions are flagged and skipped.
+ */
+public class SolveReplay {
+
+    /**
+     * The outcome of replaying a record.
+     */
+    public static class Result {
+        private final String outcome;
+        private final double rate;
+        private final int iterations;
+        private final long elapsedNanos;
+
+        Result(String outcome, double rate, int iterations, long elapsedNanos) {
+            this.outcome = outcome;
+            this.rate = rate;
+            this.iterations = iterations;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /**
+         * {@link SolveRecord#CONVERGED} if the replay found a rate, otherwise
+         * the simple name of the exception which ended it.
+         * @return the outcome of the replay
+         */
+        public String getOutcome() {
+            return outcome;
+        }
+
+        /**
+         * The rate found.
+         * @return the rate found, or <code>NaN</code> if the replay failed
+         */
+        public double getRate() {
+            return rate;
+        }
+
+        /**
+         * The number of evaluations of the function by the solver.
+         * @return the number of evaluations
+         */
+        public int getIterations() {
+            return iterations;
+        }
+
+        /**
+         * The elapsed time of the replay, including the construction of the
+         * {@link Xirr} instance.
+         * @return the elapsed time of the replay
+         */
+        public Duration getElapsed() {
+            return Duration.ofNanos(elapsedNanos);
+        }
+
+        @Override
+        public String toString() {
+            return '{'
+                + "outcome=" + outcome
+                + ", rate=" + rate
+                + ", iterations=" + iterations
+                + ", elapsed=" + getElapsed() + '}';
+        }
+    }
+
+    private SolveReplay() {
+    }
+
+    /**
+     * Replay the given record with the given configuration.  The builder
+     * passed to the configuration already has the transactions, the day count
+     * convention and the starting rate of the record.
+     * @param record the record
+     * @param configure configures the solver
+     * @return the outcome of the replay
+     * @throws IllegalArgumentException if the record is not
+     *                                  {@link #isReplayable(SolveRecord) replayable}
+     */
+    public static Result replay(SolveRecord record, UnaryOperator<Xirr.Builder> configure) {
+        final List<SolveRecord> traces = new ArrayList<>(1);
+        final SolveRecorder recorder = SolveRecorder.builder()
+            .withIterationThreshold(-1)
+            .withSink(traces::add)
+            .build();
+        final Xirr.Builder builder = Xirr.builder()
+            .withTransactions(record.getTransactions())
+            .withDayCountConvention(convention(record.getConvention()))
+            .withGuess(record.getGuess());
+        final long start = System.nanoTime();
+        String outcome = SolveRecord.CONVERGED;
+        double rate;
+        try {
+            rate = configure.apply(builder).withRecorder(recorder).xirr();
+        } catch (ArithmeticException | IllegalArgumentException e) {
+            outcome = e.getClass().getSimpleName();
+            rate = Double.NaN;
+        }
+        final long elapsed = System.nanoTime() - start;
+        return new Result(outcome, rate,
+            traces.isEmpty() ? 0 : traces.get(0).getIterations(), elapsed);
+    }
+
+    /**
+     * Replay the given record with each of the given configurations.
+     * @param record the record
+     * @param configurations the configurations by name
+     * @return the outcome of each replay by the name of its configuration
+     */
+    public static Map<String, Result> replay(
+        SolveRecord record,
+        Map<String, UnaryOperator<Xirr.Builder>> configurations) {
+        final Map<String, Result> results = new LinkedHashMap<>();
+        for (Map.Entry<String, UnaryOperator<Xirr.Builder>> entry : configurations.entrySet()) {
+            results.put(entry.getKey(), replay(record, entry.getValue()));
+        }
+        return results;
+    }
+
+    /**
+     * Whether the given record can be replayed, i.e. whether its day count
+     * convention is one of the built-in conventions.  Records of solves with
+     * custom conventions cannot be replayed as the convention is not stored.
+     * @param record the record
+     * @return whether the record can be replayed
+     */
+    public static boolean isReplayable(SolveRecord record) {
+        return DayCountConventions.forIdentifier(record.getConvention()) != null;
+    }
+
+    /**
+     * The built-in day count convention with the given identifier.
+     * @see SolveRecord#getConvention()
+     */
+    static DayCountConvention convention(final String identifier) {
+        final DayCountConvention convention = DayCountConventions.forIdentifier(identifier);
+        if (convention == null) {
+            throw new IllegalArgumentException("Unsupported day count convention: " + identifier);
+        }
+        return convention;
+    }
+
+    public static void main(String... args) throws IOException {
+        final Map<String, UnaryOperator<Xirr.Builder>> configurations = new LinkedHashMap<>();
+        configurations.put("default", b -> b);
+        configurations.put("log-space", b -> b.withLogSpaceEvaluation(true));
+        configurations.put("fast", b -> b.withFastApproximation(true));
+        int skipped = 0;
+        for (String arg : args) {
+            final Path file = Paths.get(arg);
+            for (SolveRecord record : SolveRecorder.read(file)) {
+                System.out.println(record);
+                if (!isReplayable(record)) {
+                    System.out.println("  skipped: unsupported day count convention "
+                        + record.getConvention());
+                    skipped++;
+                    continue;
+                }
+                for (Map.Entry<String, Result> entry : replay(record, configurations).entrySet()) {
+                    System.out.printf("  %-10s %s%n", entry.getKey(), entry.getValue());
+                }
+            }
+        }
+        if (skipped > 0) {
+            System.err.printf("Skipped %d record(s) with unsupported day count conventions%n", skipped);
+        }
+    }
+}
@@ -1,8 +1,11 @@
 package org.decampo.xirr;
 
+import java.math.BigDecimal;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.time.ZoneId;
 import java.util.Date;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Represents a transaction for the purposes of computing the irregular rate
@@ -12,12 +15,27 @@ import java.util.Date;
  * withdrawals from your cash).  Positive amounts represent withdrawals from the
  * investment (deposits into cash).  Zero amounts are allowed in case your
  * investment is now worthless.
+ * <p>
+ * Transactions constructed from a day are placed at the start of that day in
+ * UTC.  Transactions constructed from an {@link Instant} or a number of epoch
+ * milliseconds keep their time of day; {@link DayCountConvention#actual(double)
+ * actual} day count conventions then measure the fractional days between
+ * transactions while other conventions use whole (UTC) days.
+ * <p>
+ * Transactions constructed from a {@link BigDecimal} amount keep the exact
+ * amount for {@link Xirr#verify(double)}; all other computations use the
+ * nearest double.
  * @see Xirr
  */
 public class Transaction {
 
+    static final long MILLIS_PER_DAY = TimeUnit.DAYS.toMillis(1);
+
     final double amount;
+    final BigDecimal exactAmount;
     final LocalDate when;
+    final long epochMilli;
+    final boolean intraday;
 
     /**
      * Construct a Transaction instance with the given amount at the given day.
@@ -25,18 +43,75 @@ public class Transaction {
      * @param when the day the transaction took place
      */
     public Transaction(double amount, LocalDate when) {
+        this(amount, when, when.toEpochDay() * MILLIS_PER_DAY, false);
+    }
+
+    private Transaction(double amount, LocalDate when, long epochMilli, boolean intraday) {
+        this(amount, null, when, epochMilli, intraday);
+    }
+
+    private Transaction(
+        double amount,
+        BigDecimal exactAmount,
+        LocalDate when,
+        long epochMilli,
+        boolean intraday) {
         this.amount = amount;
+        this.exactAmount = exactAmount;
         this.when = when;
+        this.epochMilli = epochMilli;
+        this.intraday = intraday;
     }
 
     /**
      * Construct a Transaction instance with the given amount at the given day.
+     * The time of day is discarded; the day is determined in the system
+     * default time zone.  When constructing many transactions prefer
+     * {@link #Transaction(double, Date, ZoneId)} with a zone looked up once,
+     * or {@link #Transaction(double, Instant)} to keep the time of day.
      * @param amount the amount transferred
      * @param when the day the transaction took place
      */
     public Transaction(double amount, Date when) {
-        this.amount = amount;
-        this.when = LocalDate.from(when.toInstant().atZone(ZoneId.systemDefault()));
+        this(amount, when, ZoneId.systemDefault());
+    }
+
+    /**
+     * Construct a Transaction instance with the given amount at the given day.
+     * The time of day is discarded; the day is determined in the given zone.
+     * @param amount the amount transferred
+     * @param when the day the transaction took place
+     * @param zone the zone in which to determine the day
+     */
+    public Transaction(double amount, Date when, ZoneId zone) {
+        this(amount, LocalDate.from(when.toInstant().atZone(zone)));
+    }
+
+    /**
+     * Construct a Transaction instance with the given amount at the given
+     * instant.  The time of day is kept.
+     * @param amount the amount transferred
+     * @param when the instant the transaction took place
+     */
+    public Transaction(double amount, Instant when) {
+        this(amount, when.toEpochMilli(), true);
+    }
+
+    private Transaction(double amount, long epochMilli, boolean intraday) {
+        this(amount, LocalDate.ofEpochDay(Math.floorDiv(epochMilli, MILLIS_PER_DAY)),
+            epochMilli, intraday);
+    }
+
+    /**
+     * Construct a Transaction instance with the given amount at the given
+     * number of milliseconds since the epoch.  The time of day is kept.
+     * @param amount the amount transferred
+     * @param epochMilli the milliseconds since 1970-01-01T00:00:00Z when the
+     *                   transaction took place
+     * @return the transaction
+     */
+    public static Transaction ofEpochMilli(double amount, long epochMilli) {
+        return new Transaction(amount, epochMilli, true);
     }
 
     /**
@@ -47,8 +122,55 @@ public class Transaction {
      *             for the format
      */
     public Transaction(double amount, String when) {
-        this.amount = amount;
-        this.when = LocalDate.parse(when);
+        this(amount, LocalDate.parse(when));
+    }
+
+    /**
+     * Construct a Transaction instance with the given exact amount at the
+     * given day.
+     * @param amount the amount transferred
+     * @param when the day the transaction took place
+     */
+    public Transaction(BigDecimal amount, LocalDate when) {
+        this(amount.doubleValue(), amount, when, when.toEpochDay() * MILLIS_PER_DAY, false);
+    }
+
+    /**
+     * Construct a Transaction instance with the given exact amount at the
+     * given day.
+     * @param amount the amount transferred
+     * @param when the day the transaction took place, see
+     *             {@link LocalDate#parse(java.lang.CharSequence) }
+     *             for the format
+     */
+    public Transaction(BigDecimal amount, String when) {
+        this(amount, LocalDate.parse(when));
+    }
+
+    /**
+     * Construct a Transaction instance with the given exact amount at the
+     * given instant.  The time of day is kept.
+     * @param amount the amount transferred
+     * @param when the instant the transaction took place
+     */
+    public Transaction(BigDecimal amount, Instant when) {
+        this(amount.doubleValue(), amount,
+            LocalDate.ofEpochDay(Math.floorDiv(when.toEpochMilli(), MILLIS_PER_DAY)),
+            when.toEpochMilli(), true);
+    }
+
+    /**
+     * Construct a Transaction instance with an exact amount given as an
+     * unscaled value and a scale, e.g. a number of cents with a scale of 2.
+     * @param unscaledAmount the unscaled amount transferred
+     * @param scale the number of digits of the unscaled amount to the right
+     *              of the decimal point
+     * @param when the day the transaction took place
+     * @return the transaction
+     * @see BigDecimal#valueOf(long, int)
+     */
+    public static Transaction ofScaled(long unscaledAmount, int scale, LocalDate when) {
+        return new Transaction(BigDecimal.valueOf(unscaledAmount, scale), when);
     }
 
     /**
@@ -59,6 +181,16 @@ public class Transaction {
         return amount;
     }
 
+    /**
+     * The exact amount transferred in this transaction; for transactions
+     * constructed from a double, the decimal representation of the double.
+     * @return the exact amount transferred in this transaction
+     * @see BigDecimal#valueOf(double)
+     */
+    public BigDecimal getExactAmount() {
+        return exactAmount != null ? exactAmount : BigDecimal.valueOf(amount);
+    }
+
     /**
      * The day the transaction took place.
      * @return day the transaction took place
@@ -66,4 +198,23 @@ public class Transaction {
     public LocalDate getWhen() {
         return when;
     }
+
+    /**
+     * The instant the transaction took place; the start of the day in UTC for
+     * transactions constructed from a day.
+     * @return instant the transaction took place
+     */
+    public Instant getInstant() {
+        return Instant.ofEpochMilli(epochMilli);
+    }
+
+    /**
+     * The milliseconds since 1970-01-01T00:00:00Z when the transaction took
+     * place; the start of the day in UTC for transactions constructed from a
+     * day.
+     * @return milliseconds since the epoch when the transaction took place
+     */
+    public long getEpochMilli() {
+        return epochMilli;
+    }
 }
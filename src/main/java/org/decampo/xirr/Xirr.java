@@ -1,11 +1,12 @@
 package org.decampo.xirr;
 
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.List;
-import java.util.stream.Collectors;
-
-import static java.time.temporal.ChronoUnit.DAYS;
+import java.util.function.DoubleUnaryOperator;
+import java.util.stream.IntStream;
 
 /**
  * Calculates the irregular rate of return on a series of transactions.  The
@@ -18,7 +19,9 @@ import static java.time.temporal.ChronoUnit.DAYS;
  * now, as if you had cashed out the investment.
  * <p>
  * The default number of days per year used for calculation is 365 (ACT/365), but it is possible to override this at the point of
- * construction, or with the withDaysInYear builder option
+ * construction, or with the withDaysInYear builder option.  Other day count
+ * conventions, e.g. ACT/ACT or 30/360, are available via the
+ * withDayCountConvention builder option, see {@link DayCountConvention}.
  * <p>
  * Example usage:
  * <code>
@@ -46,13 +49,28 @@ import static java.time.temporal.ChronoUnit.DAYS;
  *         ).xirr();
  * </code>
  * <p>
- * This class is not thread-safe and is designed for each instance to be used
- * once.
+ * This class is not thread-safe.  An instance may be queried repeatedly, e.g.
+ * via {@link #rateFor(double)} or {@link #amountFor(int, double)}, to avoid
+ * rebuilding the investments for each query.
  */
 public class Xirr {
 
-    private static final int DEFAULT_DAYS_IN_YEAR = 365;
-    private final double daysInYear;
+    /** Number of rates evaluated per sweep over the investments. */
+    private static final int BLOCK_SIZE = 64;
+    /** Largest gap in days bridged by multiplying by a tabulated power. */
+    private static final int MAX_STEP = 64;
+    /** Number of investments after which a stepped term is recomputed exactly. */
+    private static final int RESYNC = 32;
+    /**
+     * Tolerance, relative to the total deposits, of the approximate solution
+     * in fast mode; well within the accuracy of {@link FastMath#exp(double)}.
+     */
+    private static final double FAST_TOLERANCE = 1e-5;
+    /** Default number of grid intervals scanned by {@link #roots(double, double)}. */
+    private static final int DEFAULT_ROOT_INTERVALS = 1024;
+    /** Default error bound of {@link #surrogate(double, double)}, relative to the deposits. */
+    private static final double DEFAULT_SURROGATE_TOLERANCE = 1e-9;
+    private final DayCountConvention convention;
 
     /**
      * Convenience method for getting an instance of a {@link Builder}.
@@ -62,11 +80,37 @@ public class Xirr {
         return new Builder();
     }
 
-    private final List<Investment> investments;
+    /** The amount of each investment, in the order supplied. */
+    private final double[] amounts;
+    /** The number of years for which each investment applies, including
+     * fractional years. */
+    private final double[] years;
+    /** The exact amount of each investment where one was given, or null if
+     * none was. */
+    private final BigDecimal[] exactAmounts;
+    /** The epoch day of each investment, or the epoch millisecond if any of
+     * the transactions is intraday. */
+    private final long[] instants;
+    /** The largest of {@link #years}; the smallest is always zero. */
+    private final double maxYears;
     private final XirrDetails details;
 
     private final NewtonRaphson.Builder builder;
     private Double guess;
+    private Double relativeTolerance;
+    private Double stepTolerance;
+    private boolean logSpace;
+    private boolean fast;
+    private RootFinder rootFinder;
+    private double hurdleRate;
+    private SolveRecorder recorder;
+    /** The investments in ascending order of days to the end, for the
+     * stepped sweep; null until first needed. */
+    private int[] stepOrder;
+    /** The gap in days from the previous investment in {@link #stepOrder},
+     * or -1 where the term is computed exactly. */
+    private int[] steps;
+    private int maxStep;
 
     /**
      * Construct an Xirr instance for the given transactions.
@@ -101,7 +145,7 @@ public class Xirr {
      * @throws IllegalArgumentException if all the transactions non-negative (withdrawals)
      */
     public Xirr(Collection<Transaction> txs) {
-        this(txs, null, null, DEFAULT_DAYS_IN_YEAR);
+        this(txs, null, null, DayCountConvention.ACT_365, false);
     }
 
     /**
@@ -114,36 +158,166 @@ public class Xirr {
      * @throws IllegalArgumentException if all the transactions non-negative (withdrawals)
      */
     public Xirr(Collection<Transaction> txs, int daysInYear) {
-        this(txs, null, null, daysInYear);
+        this(txs, null, null, DayCountConvention.actual(daysInYear), false);
     }
 
-    private Xirr(Collection<Transaction> txs, NewtonRaphson.Builder builder, Double guess, int daysInYear) {
+    /**
+     * Construct an Xirr instance for the given transactions, copying and
+     * summarizing them in a single pass.
+     * @param sorted whether the transactions are declared to be in ascending
+     *               order, so that the first and last give the start and end
+     */
+    private Xirr(
+        Collection<Transaction> txs,
+        NewtonRaphson.Builder builder,
+        Double guess,
+        DayCountConvention convention,
+        boolean sorted) {
         if (txs.size() < 2) {
             throw new IllegalArgumentException(
                 "Must have at least two transactions");
         }
-        if (daysInYear <= 0) {
-            throw new IllegalArgumentException("Days in year must be positive: " + daysInYear);
+        this.convention = convention;
+        details = new XirrDetails();
+        amounts = new double[txs.size()];
+        years = new double[txs.size()];
+        final long[] epochMillis = new long[txs.size()];
+        BigDecimal[] exact = null;
+        int i = 0;
+        for (Transaction tx : txs) {
+            if (sorted) {
+                details.accumulateSorted(tx.amount, tx.epochMilli, tx.intraday);
+            } else {
+                details.accumulate(tx.amount, tx.epochMilli, tx.intraday);
+            }
+            amounts[i] = tx.amount;
+            if (tx.exactAmount != null) {
+                if (exact == null) {
+                    exact = new BigDecimal[txs.size()];
+                }
+                exact[i] = tx.exactAmount;
+            }
+            epochMillis[i] = tx.epochMilli;
+            i++;
         }
-        this.daysInYear = daysInYear;
-        details = txs.stream().collect(XirrDetails.collector());
+        details.finish();
         details.validate();
-        investments = txs.stream()
-            .map(this::createInvestment)
-            .collect(Collectors.toList());
+        instants = toInstants(details, epochMillis);
+        maxYears = yearFractions(convention, details, instants, years);
+        exactAmounts = exact;
 
         this.builder = builder != null ? builder : NewtonRaphson.builder();
         this.guess = guess;
     }
 
-    private Investment createInvestment(Transaction tx) {
-        // Transform the transaction into an Investment instance
-        // It is much easier to calculate the present value of an Investment
-        final Investment result = new Investment();
-        result.amount = tx.amount;
-        // Don't use YEARS.between() as it returns whole numbers
-        result.years = DAYS.between(tx.when, details.end) / daysInYear;
-        return result;
+    /**
+     * Construct an Xirr instance for transactions accumulated into primitive
+     * arrays, e.g. by {@link XirrCollectors}.  The arrays are used as is and
+     * must not be modified afterwards.
+     * @param details the details of the transactions
+     * @param amounts the amounts of the transactions
+     * @param epochMillis the instants of the transactions, overwritten
+     * @param convention the day count convention
+     * @throws IllegalArgumentException if the transactions are invalid
+     */
+    Xirr(XirrDetails details, double[] amounts, long[] epochMillis, DayCountConvention convention) {
+        if (amounts.length < 2) {
+            throw new IllegalArgumentException(
+                "Must have at least two transactions");
+        }
+        this.convention = convention;
+        this.details = details;
+        details.validate();
+        this.amounts = amounts;
+        exactAmounts = null;
+        years = new double[amounts.length];
+        instants = toInstants(details, epochMillis);
+        maxYears = yearFractions(convention, details, instants, years);
+
+        this.builder = NewtonRaphson.builder();
+        this.guess = null;
+    }
+
+    /**
+     * Convert the given epoch milliseconds to epoch days in place, unless any
+     * of the transactions is intraday.
+     * @return the instants of the transactions
+     */
+    private static long[] toInstants(XirrDetails details, long[] epochMillis) {
+        if (!details.intraday) {
+            for (int i = 0; i < epochMillis.length; i++) {
+                epochMillis[i] = Math.floorDiv(epochMillis[i], Transaction.MILLIS_PER_DAY);
+            }
+        }
+        return epochMillis;
+    }
+
+    /**
+     * Compute the year fractions of the given instants to the end of the
+     * transactions.
+     * @param convention the day count convention
+     * @param details the details of the transactions
+     * @param instants the epoch milliseconds of the transactions if any is
+     *                 intraday, otherwise the epoch days
+     * @param years receives the year fractions
+     * @return the year fraction of the start of the transactions
+     * @throws IllegalArgumentException if that fraction is not positive
+     */
+    private static double yearFractions(
+        DayCountConvention convention,
+        XirrDetails details,
+        long[] instants,
+        double[] years) {
+        if (details.intraday) {
+            convention.yearFractionsEpochMilli(
+                instants, 0, instants.length, details.endMilli, years);
+            return checkSpan(convention,
+                convention.yearFractionEpochMilli(details.startMilli, details.endMilli));
+        } else {
+            final long end = details.end.toEpochDay();
+            convention.yearFractions(instants, 0, instants.length, end, years);
+            return checkSpan(convention,
+                convention.yearFraction(details.start.toEpochDay(), end));
+        }
+    }
+
+    /**
+     * Reject transactions which span no time under the convention, e.g.
+     * several times of the same day under a convention counting whole days,
+     * for which every year fraction is zero.
+     * @return the given span
+     * @throws IllegalArgumentException if the span is not positive
+     */
+    private static double checkSpan(DayCountConvention convention, double years) {
+        if (!(years > 0)) {
+            throw new IllegalArgumentException(
+                "Transactions must span a positive fraction of a year under " + convention);
+        }
+        return years;
+    }
+
+    /**
+     * Construct an Xirr instance for the given cash flows.
+     * @param flows the cash flows
+     * @param builder the NewtonRaphson builder, may be null
+     * @param guess the initial guess, may be null
+     * @param convention the day count convention
+     * @throws IllegalArgumentException if the cash flows are invalid
+     */
+    Xirr(CashFlows flows, NewtonRaphson.Builder builder, Double guess, DayCountConvention convention) {
+        this.convention = convention;
+        details = flows.details();
+        details.validate();
+        amounts = flows.amounts;
+        exactAmounts = null;
+        instants = flows.days;
+        years = new double[flows.size()];
+        final long end = flows.days[flows.size() - 1];
+        convention.yearFractions(flows.days, 0, years.length, end, years);
+        maxYears = checkSpan(convention, years[0]);
+
+        this.builder = builder != null ? builder : NewtonRaphson.builder();
+        this.guess = guess;
     }
 
     /**
@@ -154,8 +328,11 @@ public class Xirr {
      *         given rate of return
      */
     public double presentValue(final double rate) {
-        return investments.stream()
-            .mapToDouble(inv -> inv.presentValue(rate))
+        if (logSpace && rate != -1) {
+            return logSpaceSum(rate, false, false);
+        }
+        return IntStream.range(0, amounts.length)
+            .mapToDouble(i -> Investment.presentValue(amounts[i], years[i], rate))
             .sum();
     }
 
@@ -165,11 +342,278 @@ public class Xirr {
      * @return derivative of the present value under the given rate
      */
     public double derivative(final double rate) {
-        return investments.stream()
-            .mapToDouble(inv -> inv.derivative(rate))
+        if (logSpace && rate != -1) {
+            return logSpaceSum(rate, true, false);
+        }
+        return IntStream.range(0, amounts.length)
+            .mapToDouble(i -> Investment.derivative(amounts[i], years[i], rate))
             .sum();
     }
 
+    /**
+     * The present value under the given rate divided by
+     * <i>e</i><sup><i>M</i></sup>, where <i>M</i> is the largest exponent
+     * <i>Y</i> <i>log</i>(1 + <i>r</i>) among the investments.  This has the
+     * same roots as the present value but cannot overflow, so it is the
+     * function solved when log-space evaluation is enabled.
+     */
+    private double scaledPresentValue(final double rate) {
+        return rate != -1 ? logSpaceSum(rate, false, true) : presentValue(rate);
+    }
+
+    /**
+     * The derivative of {@link #scaledPresentValue(double)}.
+     */
+    private double scaledDerivative(final double rate) {
+        return rate != -1 ? logSpaceSum(rate, true, true) : derivative(rate);
+    }
+
+    /**
+     * Evaluate the present value or its derivative in log space.  Each term
+     * <i>A</i>(1 + <i>r</i>)<sup><i>Y</i></sup> is computed as
+     * <i>A</i> <i>e</i><sup><i>Y</i> <i>log</i>(1 + <i>r</i>) - <i>M</i></sup>
+     * where <i>M</i> is the largest exponent, so no term exceeds the
+     * magnitude of its amount, and the terms are accumulated with Neumaier's
+     * compensated summation.  The result is multiplied by
+     * <i>e</i><sup><i>M</i></sup> unless <code>scaled</code>.
+     * <p>
+     * Below -100% the terms are extended as in
+     * {@link Investment#presentValue(double, double, double)}, with the
+     * logarithm of -1 - <i>r</i> in place of that of 1 + <i>r</i>.  In both
+     * ranges the derivative of a term is the term times
+     * <i>Y</i> / (1 + <i>r</i>).
+     */
+    private double logSpaceSum(final double rate, final boolean derivative, final boolean scaled) {
+        final boolean positiveBase = -1 < rate;
+        final double log = positiveBase ? Math.log1p(rate) : Math.log(-1 - rate);
+        final double peakYears = log >= 0 ? maxYears : 0;
+        final double peak = peakYears * log;
+        double sum = 0;
+        double compensation = 0;
+        for (int i = 0; i < amounts.length; i++) {
+            final double amount = positiveBase ? amounts[i] : -Math.abs(amounts[i]);
+            double term = amount * Math.exp(years[i] * log - peak);
+            if (derivative) {
+                term *= (scaled ? years[i] - peakYears : years[i]) / (1 + rate);
+            }
+            final double t = sum + term;
+            if (Math.abs(sum) >= Math.abs(term)) {
+                compensation += (sum - t) + term;
+            } else {
+                compensation += (term - t) + sum;
+            }
+            sum = t;
+        }
+        sum += compensation;
+        return scaled || sum == 0 ? sum : sum * Math.exp(peak);
+    }
+
+    /**
+     * Calculates the present value of the investment under each of the given
+     * rates.  Equivalent to invoking {@link #presentValue(double)} for each
+     * rate, but considerably faster for many rates.
+     * @param rates the rates of return
+     * @return the present value under each of the given rates
+     * @see #presentValues(double[], double[], double[], boolean)
+     */
+    public double[] presentValues(final double[] rates) {
+        final double[] values = new double[rates.length];
+        presentValues(rates, values, null, false);
+        return values;
+    }
+
+    /**
+     * Calculates the present value of the investment and its derivative under
+     * each of the given rates in a single sweep over the investments.
+     * <p>
+     * The rates are processed in blocks; for each block the investments are
+     * traversed once, so each investment is loaded once per block rather than
+     * once per rate.  The logarithm of the base is computed once per rate and
+     * the present value and derivative share a single exponentiation.  Under
+     * the {@link DayCountConvention#actual(double) actual} conventions, for
+     * transactions without a time of day and rates above -100%, most terms
+     * are instead the previous term times a tabulated power, with no
+     * exponentiation at all.  When <code>parallel</code> is true, the blocks are
+     * distributed over the common fork-join pool.  The results do not depend
+     * on whether the evaluation is parallel.
+     * @param rates the rates of return
+     * @param values receives the present value under each rate, must be at
+     *               least as long as <code>rates</code>
+     * @param derivatives receives the derivative under each rate, must be at
+     *                    least as long as <code>rates</code>; may be null if
+     *                    the derivatives are not required
+     * @param parallel whether to evaluate the blocks of rates in parallel
+     * @throws IllegalArgumentException if an output array is too short
+     */
+    public void presentValues(
+        final double[] rates,
+        final double[] values,
+        final double[] derivatives,
+        final boolean parallel) {
+        if (values.length < rates.length
+            || derivatives != null && derivatives.length < rates.length) {
+            throw new IllegalArgumentException(
+                "Output arrays must be at least as long as the rates");
+        }
+        final boolean stepped = convention instanceof DayCountConventions.Actual
+            && !details.intraday;
+        if (stepped && stepOrder == null) {
+            prepareSteps();
+        }
+        final int blocks = (rates.length + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        final IntStream stream = IntStream.range(0, blocks);
+        (parallel ? stream.parallel() : stream).forEach(block -> {
+            final int from = block * BLOCK_SIZE;
+            final int to = Math.min(rates.length, (block + 1) * BLOCK_SIZE);
+            if (stepped && aboveTotalLoss(rates, from, to)) {
+                steppedSweep(rates, values, derivatives, from, to);
+            } else {
+                sweep(rates, values, derivatives, from, to);
+            }
+        });
+    }
+
+    private static boolean aboveTotalLoss(final double[] rates, final int from, final int to) {
+        for (int j = from; j < to; j++) {
+            if (!(-1 < rates[j])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Order the investments by their whole days to the end, and note the
+     * gap between consecutive ones for {@link #steppedSweep}.
+     */
+    private void prepareSteps() {
+        final int[] order = IntStream.range(0, amounts.length)
+            .boxed()
+            .sorted((i, j) -> Long.compare(instants[j], instants[i]))
+            .mapToInt(Integer::intValue)
+            .toArray();
+        final int[] gaps = new int[order.length];
+        int max = 0;
+        for (int k = 0; k < order.length; k++) {
+            final long gap = k == 0 ? Long.MAX_VALUE : instants[order[k - 1]] - instants[order[k]];
+            if (k % RESYNC == 0 || gap > MAX_STEP) {
+                gaps[k] = -1;
+            } else {
+                gaps[k] = (int) gap;
+                max = Math.max(max, gaps[k]);
+            }
+        }
+        maxStep = max;
+        steps = gaps;
+        stepOrder = order;
+    }
+
+    /**
+     * The sweep for a convention which counts actual days over a fixed
+     * number per year and rates above -100%: each term is (1 + rate) to the
+     * power of its days over the days in the year, so in ascending order of
+     * days each term is the previous multiplied by a power of
+     * (1 + rate)<sup>1/days in year</sup> tabulated once per rate.  The terms
+     * are recomputed exactly at intervals and after long gaps, so the
+     * rounding of the products stays within a few dozen ulps.
+     */
+    private void steppedSweep(
+        final double[] rates,
+        final double[] values,
+        final double[] derivatives,
+        final int from,
+        final int to) {
+        final int width = to - from;
+        final double daysInYear = ((DayCountConventions.Actual) convention).daysInYear;
+        final double[] logs = new double[width];
+        final double[] powers = new double[(maxStep + 1) * width];
+        for (int j = 0; j < width; j++) {
+            logs[j] = Math.log1p(rates[from + j]);
+            final double step = Math.exp(logs[j] / daysInYear);
+            powers[j] = 1;
+            for (int g = 1; g <= maxStep; g++) {
+                powers[g * width + j] = powers[(g - 1) * width + j] * step;
+            }
+        }
+        final double[] terms = new double[width];
+        final double[] sums = new double[width];
+        final double[] weighted = derivatives != null ? new double[width] : null;
+        for (int k = 0; k < stepOrder.length; k++) {
+            final int i = stepOrder[k];
+            final double amount = amounts[i];
+            final double y = years[i];
+            final int gap = steps[k];
+            if (gap < 0) {
+                for (int j = 0; j < width; j++) {
+                    terms[j] = Math.exp(y * logs[j]);
+                }
+            } else {
+                final int offset = gap * width;
+                for (int j = 0; j < width; j++) {
+                    terms[j] *= powers[offset + j];
+                }
+            }
+            for (int j = 0; j < width; j++) {
+                sums[j] += amount * terms[j];
+            }
+            if (weighted != null) {
+                final double ay = amount * y;
+                for (int j = 0; j < width; j++) {
+                    weighted[j] += ay * terms[j];
+                }
+            }
+        }
+        System.arraycopy(sums, 0, values, from, width);
+        if (weighted != null) {
+            for (int j = 0; j < width; j++) {
+                derivatives[from + j] = weighted[j] / (1 + rates[from + j]);
+            }
+        }
+    }
+
+    private void sweep(
+        final double[] rates,
+        final double[] values,
+        final double[] derivatives,
+        final int from,
+        final int to) {
+        Arrays.fill(values, from, to, 0);
+        if (derivatives != null) {
+            Arrays.fill(derivatives, from, to, 0);
+        }
+        // The logarithm of the base of the exponent for each rate, so that
+        // each term costs a single exp() rather than a pow()
+        final double[] logs = new double[to - from];
+        for (int j = from; j < to; j++) {
+            final double rate = rates[j];
+            logs[j - from] = -1 < rate ? Math.log1p(rate)
+                : rate < -1 ? Math.log(-1 - rate) : Double.NaN;
+        }
+        for (int i = 0; i < amounts.length; i++) {
+            final double amount = amounts[i];
+            final double y = years[i];
+            for (int j = from; j < to; j++) {
+                final double rate = rates[j];
+                final double log = logs[j - from];
+                if (-1 < rate) {
+                    final double value = amount * Math.exp(y * log);
+                    values[j] += value;
+                    if (derivatives != null) {
+                        derivatives[j] += value * y / (1 + rate);
+                    }
+                } else if (rate < -1) {
+                    final double value = Math.abs(amount) * Math.exp(y * log);
+                    values[j] -= value;
+                    if (derivatives != null) {
+                        derivatives[j] += value * y / (-1 - rate);
+                    }
+                } else {
+                    values[j] += Investment.presentValue(amount, y, rate);
+                }
+            }
+        }
+    }
+
     /**
      * Calculates the irregular rate of return of the transactions for this
      * instance of Xirr.
@@ -178,33 +622,785 @@ public class Xirr {
      * @throws NonconvergenceException if the Newton-Raphson method fails to converge in the
      */
     public double xirr() {
-        final double years = DAYS.between(details.start, details.end) / daysInYear;
         if (details.maxAmount == 0) {
             return -1; // Total loss
         }
-        guess = guess != null ? guess : (details.total / details.deposits) / years;
-        return builder.withFunction(this::presentValue)
-            .withDerivative(this::derivative)
-            .findRoot(guess);
+        double start = guess();
+        if (fast) {
+            try {
+                start = NewtonRaphson.builder()
+                    .withRelativeTolerance(FAST_TOLERANCE)
+                    .withScale(details.deposits)
+                    .build()
+                    .findRoot(new PresentValueEvaluator(amounts, years, true), start);
+            } catch (ArithmeticException | IllegalArgumentException e) {
+                // Solve with full precision from the usual guess
+            }
+        }
+        if (recorder == null) {
+            return solve(start, null);
+        }
+        final SolveRecorder.Trace trace = recorder.trace();
+        final double rate;
+        try {
+            rate = solve(start, trace);
+        } catch (RuntimeException e) {
+            recorder.completed(trace, instants, amounts, details.intraday, convention, start, Double.NaN, e);
+            throw e;
+        }
+        recorder.completed(trace, instants, amounts, details.intraday, convention, start, rate, null);
+        return rate;
+    }
+
+    /**
+     * Find the rate from the given start, recording each evaluation of the
+     * function in the trace if one is given.
+     */
+    private double solve(final double start, final SolveRecorder.Trace trace) {
+        final RootFinder.Evaluator evaluator = evaluator();
+        final RootFinder finder = rootFinder != null ? rootFinder : newtonRaphson().build();
+        return finder.findRoot(trace != null ? trace.wrap(evaluator) : evaluator, start);
+    }
+
+    /**
+     * The function solved by {@link #xirr()} along with its derivative.
+     */
+    private RootFinder.Evaluator evaluator() {
+        if (logSpace) {
+            return new RootFinder.Evaluator() {
+                @Override
+                public double value(double x) {
+                    return scaledPresentValue(x);
+                }
+
+                @Override
+                public double derivative(double x) {
+                    return scaledDerivative(x);
+                }
+            };
+        }
+        return new PresentValueEvaluator(amounts, years);
+    }
+
+    /**
+     * Calculates the rate of return for which the present value of the
+     * transactions for this instance of Xirr is the given target.  When the
+     * target is zero this is equivalent to {@link #xirr()}, except that the
+     * total loss case is not treated specially.
+     * <p>
+     * This may be invoked repeatedly on the same instance to answer queries
+     * for many targets without rebuilding the investments.
+     * @param target the desired present value
+     * @return the rate of return yielding the target present value
+     * @throws ZeroValuedDerivativeException if the derivative is 0 while executing the Newton-Raphson method
+     * @throws NonconvergenceException if the Newton-Raphson method fails to converge in the allotted number of iterations
+     * @see NewtonRaphson#inverse(double, double)
+     */
+    public double rateFor(final double target) {
+        return rateFor(target, guess());
+    }
+
+    /**
+     * Calculates the rate of return yielding the given target present value,
+     * starting at the given rate.
+     */
+    double rateFor(final double target, final double start) {
+        return inverse(this::presentValue, this::derivative, target, start);
+    }
+
+    /**
+     * Find where the given function, e.g. an approximation of the present
+     * value, reaches the target, with the Newton-Raphson method and
+     * convergence criteria configured for this instance.
+     */
+    double inverse(
+        final DoubleUnaryOperator f,
+        final DoubleUnaryOperator df,
+        final double target,
+        final double start) {
+        return newtonRaphson().withFunction(f).withDerivative(df)
+            .build()
+            .inverse(target, start);
+    }
+
+    /** The amounts of the investments, not to be modified. */
+    double[] amounts() {
+        return amounts;
+    }
+
+    /** The year fractions of the investments, not to be modified. */
+    double[] years() {
+        return years;
+    }
+
+    /**
+     * Approximate the present value over the given interval of rates, with an
+     * error bound of a billionth of the total deposits where possible, for
+     * answering many queries on these transactions cheaply.
+     * @param lower the lower end of the interval, must be greater than -100%
+     * @param upper the upper end of the interval
+     * @return the approximation
+     * @throws IllegalArgumentException if the interval is invalid
+     * @see #surrogate(double, double, double)
+     */
+    public PresentValueSurrogate surrogate(final double lower, final double upper) {
+        return surrogate(lower, upper, DEFAULT_SURROGATE_TOLERANCE);
+    }
+
+    /**
+     * Approximate the present value over the given interval of rates by
+     * piecewise polynomials, so that the present value at any rate in the
+     * interval, and the rate for any target, may be found at a cost which
+     * does not depend on the number of transactions.
+     * @param lower the lower end of the interval, must be greater than -100%
+     * @param upper the upper end of the interval
+     * @param relativeTolerance the desired error bound, relative to the total
+     *                          deposits
+     * @return the approximation
+     * @throws IllegalArgumentException if the interval is invalid
+     * @see PresentValueSurrogate
+     */
+    public PresentValueSurrogate surrogate(
+        final double lower,
+        final double upper,
+        final double relativeTolerance) {
+        return new PresentValueSurrogate(this, lower, upper, relativeTolerance * details.deposits);
+    }
+
+    /**
+     * Calculates the amount the transaction at the given index would need to
+     * have in order for the rate of return of the transactions to be the given
+     * rate.  For example, given a series of deposits and a final transaction
+     * representing the terminal value, this answers the question "what
+     * terminal value yields the given rate?".
+     * <p>
+     * Since the present value is linear in the amount of each transaction, no
+     * iteration is required.
+     * @param index the index of the transaction, in the order supplied
+     * @param rate the desired rate of return
+     * @return the amount the transaction must have to yield the given rate
+     * @throws IllegalArgumentException if the rate is not greater than -100%
+     * @throws IndexOutOfBoundsException if the index is out of range
+     */
+    public double amountFor(final int index, final double rate) {
+        return amountFor(index, rate, 0);
+    }
+
+    /**
+     * Calculates the amount the transaction at the given index would need to
+     * have in order for the present value of the transactions at the given
+     * rate to be the given target.
+     * @param index the index of the transaction, in the order supplied
+     * @param rate the rate of return
+     * @param target the desired present value
+     * @return the amount the transaction must have to yield the target present
+     *         value at the given rate
+     * @throws IllegalArgumentException if the rate is not greater than -100%
+     * @throws IndexOutOfBoundsException if the index is out of range
+     * @see #amountFor(int, double)
+     */
+    public double amountFor(final int index, final double rate, final double target) {
+        if (!(-1 < rate)) {
+            throw new IllegalArgumentException(
+                "Rate must be greater than -100%: " + rate);
+        }
+        final double others = presentValue(rate)
+            - Investment.presentValue(amounts[index], years[index], rate);
+        return (target - others) / Math.pow(1 + rate, years[index]);
+    }
+
+    /**
+     * Calculates the irregular rate of return of the transactions and verifies
+     * it in decimal arithmetic with {@link MathContext#DECIMAL128} precision.
+     * @return the verification of the rate of return
+     * @see #xirr()
+     * @see #verify(double, MathContext)
+     */
+    public Verification verifiedXirr() {
+        return verify(xirr());
+    }
+
+    /**
+     * Verifies the given rate in decimal arithmetic with
+     * {@link MathContext#DECIMAL128} precision.
+     * @param rate the rate to verify
+     * @return the verification of the rate
+     * @throws IllegalArgumentException if the rate is less than -100%
+     * @see #verify(double, MathContext)
+     */
+    public Verification verify(final double rate) {
+        return verify(rate, MathContext.DECIMAL128);
+    }
+
+    /**
+     * Verifies the given rate, typically the result of {@link #xirr()}, by
+     * computing the present value of the transactions at that rate in decimal
+     * arithmetic to the given precision.  The exact amounts of transactions
+     * constructed from a {@link BigDecimal} are used.  The exact derivative is
+     * computed in the same pass and used to take a single Newton-Raphson step
+     * from the rate, giving a refined rate.
+     * <p>
+     * The year fractions are those of the {@link DayCountConvention}, which
+     * are computed in double arithmetic.
+     * @param rate the rate to verify
+     * @param mc the precision of the decimal arithmetic
+     * @return the verification of the rate
+     * @throws IllegalArgumentException if the rate is less than -100%
+     */
+    public Verification verify(final double rate, final MathContext mc) {
+        if (!(-1 <= rate)) {
+            throw new IllegalArgumentException(
+                "Rate must not be less than -100%: " + rate);
+        }
+        final MathContext work = new MathContext(mc.getPrecision() + 5, RoundingMode.HALF_EVEN);
+        final BigDecimal exactRate = new BigDecimal(rate);
+        BigDecimal residual = BigDecimal.ZERO;
+        if (rate == -1) {
+            // Total loss: only the investments at the end retain their value
+            for (int i = 0; i < amounts.length; i++) {
+                if (years[i] == 0) {
+                    residual = residual.add(exactAmount(i), work);
+                }
+            }
+            return new Verification(rate, residual.round(mc), exactRate);
+        }
+        final BigDecimal base = BigDecimal.ONE.add(exactRate);
+        final BigDecimal log = BigDecimalMath.log(base, work);
+        BigDecimal derivative = BigDecimal.ZERO;
+        BigDecimal growth = BigDecimal.ONE;
+        for (int i = 0; i < amounts.length; i++) {
+            final BigDecimal y = new BigDecimal(years[i]);
+            if (i == 0 || years[i] != years[i - 1]) {
+                growth = BigDecimalMath.exp(y.multiply(log, work), work);
+            }
+            final BigDecimal term = exactAmount(i).multiply(growth, work);
+            residual = residual.add(term, work);
+            derivative = derivative.add(term.multiply(y, work), work);
+        }
+        derivative = derivative.divide(base, work);
+        final BigDecimal refined = derivative.signum() == 0
+            ? exactRate
+            : exactRate.subtract(residual.divide(derivative, work), mc);
+        return new Verification(rate, residual.round(mc), refined);
     }
 
     /**
-     * Convenience class which represents {@link Transaction} instances more
-     * conveniently for our purposes.
+     * Calculates the irregular rate of return of the transactions along with
+     * other common measures of their performance.  The totals are gathered
+     * while the transactions are read on construction, and the measures
+     * depending on the year fractions share a single pass over the
+     * investments, so the transactions are not traversed again.
+     * <p>
+     * The positive amounts on the last day are taken as the residual
+     * (terminal) value of the investment and the other positive amounts as
+     * distributions.  The net present value is discounted to the first day at
+     * the hurdle rate of the builder, zero by default.
+     * <p>
+     * For an instance whose amounts were combined per day, e.g. one from
+     * {@link CashFlowStore#toXirr(int)}, the measures are computed from the
+     * net amount on each day: a deposit and a withdrawal on the same day
+     * count only as their difference, so the paid-in capital, distributions,
+     * residual value, DPI and TVPI may be lower than for the same
+     * transactions given individually.  The rate and net present value are
+     * unaffected.
+     * @return the analytics of the transactions; the rate of return is
+     *         <code>NaN</code> if it cannot be computed
+     * @see Builder#withHurdleRate(double)
      */
-    private static class Investment {
-        /** The amount of the investment. */
-        double amount;
-        /** The number of years for which the investment applies, including
-         * fractional years. */
-        double years;
+    public Analytics analytics() {
+        final double log = Math.log1p(hurdleRate);
+        double presentValue = 0;
+        double weighted = 0;
+        for (int i = 0; i < amounts.length; i++) {
+            presentValue += amounts[i] * Math.exp((years[i] - maxYears) * log);
+            weighted += amounts[i] * years[i];
+        }
+        double rate;
+        try {
+            rate = xirr();
+        } catch (ArithmeticException | IllegalArgumentException e) {
+            rate = Double.NaN;
+        }
+        final double withdrawals = details.total + details.deposits;
+        return new Analytics(rate, hurdleRate, presentValue,
+            details.deposits,
+            withdrawals - details.endWithdrawals,
+            details.endWithdrawals,
+            // Flows weighted by the fraction of the period remaining
+            details.total / (-weighted / maxYears));
+    }
+
+    /**
+     * Calculates the irregular rate of return of the transactions along with
+     * its sensitivity to the amount and date of each transaction.
+     * @return the sensitivities of the rate of return
+     * @see #xirr()
+     * @see #sensitivities(double)
+     */
+    public Sensitivities sensitivities() {
+        return sensitivities(xirr());
+    }
+
+    /**
+     * Calculates the sensitivity of the given rate, a root of the present
+     * value such as the result of {@link #xirr()}, to the amount and date of
+     * each transaction.  By the implicit function theorem, the derivative of
+     * the rate with respect to an input of the present value is the partial
+     * derivative of the present value with respect to that input divided by
+     * the negated derivative with respect to the rate, so every sensitivity is
+     * computed in a single pass without solving again.
+     * <p>
+     * The sensitivity to a date is to moving the transaction one day later,
+     * measured by the change in its year fraction under the day count
+     * convention.
+     * @param rate the root at which to compute the sensitivities
+     * @return the sensitivities of the rate
+     * @throws IllegalArgumentException if the rate is not greater than -100%
+     * @throws ArithmeticException if the derivative of the present value is
+     *                             zero at the rate
+     */
+    public Sensitivities sensitivities(final double rate) {
+        if (!(-1 < rate)) {
+            throw new IllegalArgumentException(
+                "Rate must be greater than -100%: " + rate);
+        }
+        final double log = Math.log1p(rate);
+        final double[] amountSensitivities = new double[amounts.length];
+        final double[] dateSensitivities = new double[amounts.length];
+        final boolean intraday = details.intraday;
+        final long day = intraday ? Transaction.MILLIS_PER_DAY : 1;
+        final long end = intraday ? details.endMilli : details.end.toEpochDay();
+        double slope = 0;
+        for (int i = 0; i < amounts.length; i++) {
+            final double growth = Math.exp(years[i] * log);
+            final double shift = (intraday
+                ? convention.yearFractionEpochMilli(instants[i] + day, end)
+                : convention.yearFraction(instants[i] + day, end)) - years[i];
+            slope += amounts[i] * growth * years[i];
+            // Partial derivatives of the present value, scaled below
+            amountSensitivities[i] = growth;
+            dateSensitivities[i] = amounts[i] * growth * log * shift;
+        }
+        final double derivative = slope / (1 + rate);
+        if (derivative == 0) {
+            throw new ArithmeticException(
+                "Derivative of the present value is zero at rate " + rate);
+        }
+        for (int i = 0; i < amounts.length; i++) {
+            amountSensitivities[i] /= -derivative;
+            dateSensitivities[i] /= -derivative;
+        }
+        return new Sensitivities(rate, amountSensitivities, dateSensitivities);
+    }
+
+    private BigDecimal exactAmount(final int i) {
+        return exactAmounts != null && exactAmounts[i] != null
+            ? exactAmounts[i]
+            : BigDecimal.valueOf(amounts[i]);
+    }
+
+    /**
+     * Finds all the rates within the given interval for which the present
+     * value of the transactions is zero, using a default grid of 1024
+     * intervals.
+     * @param lower the lower end of the interval, must be greater than -100%
+     * @param upper the upper end of the interval
+     * @return the rates, in ascending order
+     * @throws IllegalArgumentException if the interval is invalid
+     * @see #roots(double, double, int)
+     */
+    public double[] roots(final double lower, final double upper) {
+        return roots(lower, upper, DEFAULT_ROOT_INTERVALS);
+    }
+
+    /**
+     * Finds all the rates within the given interval for which the present
+     * value of the transactions is zero.
+     * <p>
+     * A series of transactions whose amounts, ordered by date, change sign
+     * more than once may have more than one rate of return.  In that case
+     * {@link #xirr()} returns whichever rate the guess leads to.  This method
+     * instead scans the interval on a fixed grid, brackets each sign change
+     * and refines it, stopping once the number of roots reaches the bound
+     * given by {@link #maxRoots()}.  The result is deterministic for a given
+     * series, interval and grid.
+     * <p>
+     * Roots where the present value touches zero without changing sign, or
+     * pairs of roots closer together than the grid spacing, are not found.
+     * @param lower the lower end of the interval, must be greater than -100%
+     * @param upper the upper end of the interval
+     * @param intervals the number of grid intervals to scan
+     * @return the rates, in ascending order
+     * @throws IllegalArgumentException if the interval is invalid
+     */
+    public double[] roots(final double lower, final double upper, final int intervals) {
+        if (!(-1 < lower && lower < upper && Double.isFinite(upper))) {
+            throw new IllegalArgumentException(
+                "Invalid interval: [" + lower + ", " + upper + "]");
+        }
+        if (intervals <= 0) {
+            throw new IllegalArgumentException(
+                "Intervals must be positive: " + intervals);
+        }
+        return new RootScanner(this, maxRoots()).scan(lower, upper, intervals);
+    }
+
+    /**
+     * The maximum number of rates greater than -100% for which the present
+     * value of the transactions is zero.  By Descartes' rule of signs (which
+     * holds for real exponents) this is the number of sign changes in the
+     * amounts when ordered by date, after combining amounts on the same date.
+     * A conventional series, with deposits followed by withdrawals, has
+     * exactly one.
+     * @return the maximum number of rates of return
+     */
+    public int maxRoots() {
+        final Integer[] order = new Integer[years.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(years[a], years[b]));
+        int changes = 0;
+        double sign = 0;
+        for (int i = 0; i < order.length; ) {
+            double sum = 0;
+            final double y = years[order[i]];
+            for (; i < order.length && years[order[i]] == y; i++) {
+                sum += amounts[order[i]];
+            }
+            if (sum != 0) {
+                if (sign != 0 && sign != Math.signum(sum)) {
+                    changes++;
+                }
+                sign = Math.signum(sum);
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * A copy of the NewtonRaphson builder with the convergence criteria
+     * configured via the {@link Builder}, if any.  The relative tolerance is
+     * scaled by the total deposits.  The builder given to
+     * {@link Builder#withNewtonRaphsonBuilder(NewtonRaphson.Builder)} is never
+     * changed, so it may be shared by instances with different criteria.
+     */
+    private NewtonRaphson.Builder newtonRaphson() {
+        final NewtonRaphson.Builder nr = builder.copy();
+        if (relativeTolerance != null) {
+            nr.withRelativeTolerance(relativeTolerance);
+            nr.withScale(details.deposits);
+        }
+        if (stepTolerance != null) {
+            nr.withStepTolerance(stepTolerance);
+        }
+        return nr;
+    }
+
+    double guess() {
+        if (guess == null) {
+            final double years = maxYears;
+            if (logSpace) {
+                // Annualize the multiple of the withdrawals over the deposits
+                // geometrically; the arithmetic guess below is far too large
+                // for the long-dated or high-multiple series which call for
+                // log space evaluation
+                final double withdrawals = details.total + details.deposits;
+                guess = Math.expm1(Math.log(withdrawals / details.deposits) / years);
+            } else {
+                guess = (details.total / details.deposits) / years;
+            }
+        }
+        return guess;
+    }
+
+    /**
+     * The result of verifying a rate of return in decimal arithmetic.
+     * @see Xirr#verify(double, MathContext)
+     */
+    public static class Verification {
+        private final double rate;
+        private final BigDecimal residual;
+        private final BigDecimal refinedRate;
+
+        Verification(double rate, BigDecimal residual, BigDecimal refinedRate) {
+            this.rate = rate;
+            this.residual = residual;
+            this.refinedRate = refinedRate;
+        }
+
+        /**
+         * The rate which was verified.
+         * @return the rate which was verified
+         */
+        public double getRate() {
+            return rate;
+        }
+
+        /**
+         * The present value of the transactions at the rate, computed in
+         * decimal arithmetic; zero for an exact root.
+         * @return the present value of the transactions at the rate
+         */
+        public BigDecimal getResidual() {
+            return residual;
+        }
+
+        /**
+         * The rate after a single Newton-Raphson step in decimal arithmetic.
+         * @return the refined rate
+         */
+        public BigDecimal getRefinedRate() {
+            return refinedRate;
+        }
+
+        @Override
+        public String toString() {
+            return '{'
+                + "rate=" + rate
+                + ", residual=" + residual
+                + ", refinedRate=" + refinedRate + '}';
+        }
+    }
+
+    /**
+     * Measures of the performance of a series of transactions.
+     * @see Xirr#analytics()
+     */
+    public static class Analytics {
+        private final double xirr;
+        private final double hurdleRate;
+        private final double netPresentValue;
+        private final double paidIn;
+        private final double distributions;
+        private final double residualValue;
+        private final double modifiedDietz;
+
+        Analytics(
+            double xirr,
+            double hurdleRate,
+            double netPresentValue,
+            double paidIn,
+            double distributions,
+            double residualValue,
+            double modifiedDietz) {
+            this.xirr = xirr;
+            this.hurdleRate = hurdleRate;
+            this.netPresentValue = netPresentValue;
+            this.paidIn = paidIn;
+            this.distributions = distributions;
+            this.residualValue = residualValue;
+            this.modifiedDietz = modifiedDietz;
+        }
+
+        /**
+         * The irregular rate of return.
+         * @return the irregular rate of return, or <code>NaN</code> if it
+         *         could not be computed
+         */
+        public double getXirr() {
+            return xirr;
+        }
+
+        /**
+         * The rate at which the net present value is discounted.
+         * @return the hurdle rate
+         */
+        public double getHurdleRate() {
+            return hurdleRate;
+        }
+
+        /**
+         * The value of the transactions discounted to the first day at the
+         * hurdle rate.
+         * @return the net present value
+         */
+        public double getNetPresentValue() {
+            return netPresentValue;
+        }
+
+        /**
+         * The total deposits into the investment.
+         * @return the paid in capital
+         */
+        public double getPaidIn() {
+            return paidIn;
+        }
+
+        /**
+         * The total withdrawals from the investment before the last day.
+         * @return the distributions
+         */
+        public double getDistributions() {
+            return distributions;
+        }
+
+        /**
+         * The withdrawals on the last day, taken as the terminal value of the
+         * investment.
+         * @return the residual value
+         */
+        public double getResidualValue() {
+            return residualValue;
+        }
+
+        /**
+         * Distributions to paid in capital.
+         * @return the DPI
+         */
+        public double getDpi() {
+            return distributions / paidIn;
+        }
+
+        /**
+         * Total value (distributions and residual value) to paid in capital.
+         * @return the TVPI
+         */
+        public double getTvpi() {
+            return (distributions + residualValue) / paidIn;
+        }
+
+        /**
+         * Multiple on invested capital, i.e. all the withdrawals over all the
+         * deposits.  For a single series of net cash flows this is the same
+         * as the TVPI.
+         * @return the MOIC
+         */
+        public double getMoic() {
+            return getTvpi();
+        }
+
+        /**
+         * The modified Dietz return over the whole period, starting from a
+         * value of zero and ending at the residual value, with each other
+         * transaction weighted by the fraction of the period remaining after
+         * it.  This is not annualized.
+         * @return the modified Dietz return
+         */
+        public double getModifiedDietz() {
+            return modifiedDietz;
+        }
+
+        @Override
+        public String toString() {
+            return '{'
+                + "xirr=" + xirr
+                + ", netPresentValue=" + netPresentValue
+                + ", dpi=" + getDpi()
+                + ", tvpi=" + getTvpi()
+                + ", modifiedDietz=" + modifiedDietz + '}';
+        }
+    }
+
+    /**
+     * The sensitivities of a rate of return to the amount and date of each
+     * transaction.
+     * @see Xirr#sensitivities(double)
+     */
+    public static class Sensitivities {
+        private final double rate;
+        private final double[] amounts;
+        private final double[] dates;
+
+        Sensitivities(double rate, double[] amounts, double[] dates) {
+            this.rate = rate;
+            this.amounts = amounts;
+            this.dates = dates;
+        }
+
+        /**
+         * The rate at which the sensitivities were computed.
+         * @return the rate
+         */
+        public double getRate() {
+            return rate;
+        }
+
+        /**
+         * The derivative of the rate with respect to the amount of each
+         * transaction, in the order supplied.
+         * @return the sensitivities to the amounts
+         */
+        public double[] getAmountSensitivities() {
+            return amounts.clone();
+        }
+
+        /**
+         * The derivative of the rate with respect to the date of each
+         * transaction, per day later, in the order supplied.
+         * @return the sensitivities to the dates
+         */
+        public double[] getDateSensitivities() {
+            return dates.clone();
+        }
+
+        /**
+         * First order estimate of the rate after changing the amount of a
+         * single transaction.
+         * @param index the index of the transaction, in the order supplied
+         * @param amountChange the change in the amount
+         * @return the estimated rate
+         * @throws IndexOutOfBoundsException if the index is out of range
+         */
+        public double estimateRate(final int index, final double amountChange) {
+            return rate + amounts[index] * amountChange;
+        }
+
+        /**
+         * First order estimate of the rate after changing the amounts and
+         * dates of the transactions.  The estimate is only accurate for small
+         * changes; solve again for large ones.
+         * @param amountChanges the change in the amount of each transaction,
+         *                      in the order supplied, or null for none
+         * @param dayChanges the number of days each transaction moves later,
+         *                   in the order supplied, or null for none
+         * @return the estimated rate
+         * @throws IllegalArgumentException if an array has the wrong length
+         */
+        public double estimateRate(final double[] amountChanges, final double[] dayChanges) {
+            if (amountChanges != null && amountChanges.length != amounts.length
+                || dayChanges != null && dayChanges.length != dates.length) {
+                throw new IllegalArgumentException(
+                    "Changes must be given for every transaction");
+            }
+            double estimate = rate;
+            for (int i = 0; i < amounts.length; i++) {
+                if (amountChanges != null) {
+                    estimate += amounts[i] * amountChanges[i];
+                }
+                if (dayChanges != null) {
+                    estimate += dates[i] * dayChanges[i];
+                }
+            }
+            return estimate;
+        }
+
+        @Override
+        public String toString() {
+            return '{'
+                + "rate=" + rate
+                + ", amounts=" + Arrays.toString(amounts)
+                + ", dates=" + Arrays.toString(dates) + '}';
+        }
+    }
+
+    /**
+     * The present value and derivative of a single investment, i.e. a
+     * {@link Transaction} represented by its amount and the number of years
+     * for which it applies.
+     */
+    static final class Investment {
+        private Investment() {
+        }
 
         /**
          * Present value of the investment at the given rate.
+         * @param amount the amount of the investment
+         * @param years the number of years for which the investment applies
          * @param rate the rate of return
          * @return present value of the investment at the given rate
          */
-        private double presentValue(final double rate) {
+        static double presentValue(final double amount, final double years, final double rate) {
             if (-1 < rate) {
                 return amount * Math.pow(1 + rate, years);
             } else if (rate < -1) {
@@ -235,10 +1431,12 @@ public class Xirr {
 
         /**
          * Derivative of the present value of the investment at the given rate.
+         * @param amount the amount of the investment
+         * @param years the number of years for which the investment applies
          * @param rate the rate of return
          * @return derivative of the present value at the given rate
          */
-        private double derivative(final double rate) {
+        static double derivative(final double amount, final double years, final double rate) {
             if (years == 0) {
                 return 0;
             } else if (-1 < rate) {
@@ -258,8 +1456,16 @@ public class Xirr {
         private Collection<Transaction> transactions = null;
         private NewtonRaphson.Builder builder = null;
         private Double guess = null;
+        private Double relativeTolerance = null;
+        private Double stepTolerance = null;
+        private boolean logSpace = false;
+        private boolean fast = false;
+        private RootFinder rootFinder = null;
+        private double hurdleRate = 0;
+        private SolveRecorder recorder = null;
+        private boolean sorted = false;
 
-        private int daysInYear = DEFAULT_DAYS_IN_YEAR;
+        private DayCountConvention convention = DayCountConvention.ACT_365;
 
         public Builder() {
         }
@@ -283,13 +1489,168 @@ public class Xirr {
             return this;
         }
 
+        /**
+         * Use the actual number of days over the given number of days per
+         * year.  Equivalent to
+         * <code>withDayCountConvention(DayCountConvention.actual(daysInYear))</code>.
+         * @param daysInYear the number of days per year
+         * @return this builder
+         * @throws IllegalArgumentException if daysInYear is not positive
+         */
         public Builder withDaysInYear(int daysInYear) {
-            this.daysInYear = daysInYear;
+            return withDayCountConvention(DayCountConvention.actual(daysInYear));
+        }
+
+        /**
+         * Use the given day count convention to determine the number of
+         * years for which each transaction applies.  The default is
+         * {@link DayCountConvention#ACT_365}.
+         * @param convention the day count convention
+         * @return this builder
+         */
+        public Builder withDayCountConvention(DayCountConvention convention) {
+            this.convention = convention;
+            return this;
+        }
+
+        /**
+         * Terminate when the present value is within the given fraction of the
+         * total deposits of zero, in place of the absolute tolerance of the
+         * NewtonRaphson builder.
+         * @param relativeTolerance the tolerance relative to the total deposits
+         * @return this builder
+         * @see NewtonRaphson.Builder#withRelativeTolerance(double)
+         */
+        public Builder withRelativeTolerance(double relativeTolerance) {
+            this.relativeTolerance = relativeTolerance;
+            return this;
+        }
+
+        /**
+         * Terminate once a Newton-Raphson step changes the rate by less than
+         * the given amount.
+         * @param stepTolerance the step tolerance
+         * @return this builder
+         * @see NewtonRaphson.Builder#withStepTolerance(double)
+         */
+        public Builder withStepTolerance(double stepTolerance) {
+            this.stepTolerance = stepTolerance;
+            return this;
+        }
+
+        /**
+         * Evaluate the present value and its derivative in log space with
+         * compensated summation.  This avoids the overflow of
+         * <code>Math.pow</code> for long-dated series at large rates, at
+         * roughly the same cost per term.
+         * <p>
+         * When enabled, {@link Xirr#xirr()} solves for the root of the present
+         * value divided by <i>e</i><sup><i>M</i></sup>, where <i>M</i> is the
+         * largest exponent <i>Y</i> <i>log</i>(1 + <i>r</i>) among the
+         * transactions.  This has the same roots but never overflows; note
+         * that the tolerance then applies to this scaled present value, i.e.
+         * the present value discounted to the first transaction for positive
+         * rates.  Unless a guess is supplied, the initial guess is the ratio
+         * of withdrawals to deposits annualized geometrically.
+         * @param logSpace whether to evaluate in log space
+         * @return this builder
+         */
+        public Builder withLogSpaceEvaluation(boolean logSpace) {
+            this.logSpace = logSpace;
+            return this;
+        }
+
+        /**
+         * Find an approximate rate with cheap approximations of the present
+         * value and its derivative (see {@link FastMath#exp(double)}), then
+         * refine it with full precision to the tolerance of the NewtonRaphson
+         * builder.  Most iterations are thus cheap, and the refinement
+         * typically takes one or two iterations.  Should the approximate
+         * solution fail, the rate is found with full precision from the usual
+         * guess.
+         * <p>
+         * Whether this is faster depends on the series.  When the full
+         * precision solve takes only a few iterations, the approximate
+         * iterations plus the refinement may cost more than they save: see
+         * <code>PresentValuesBenchmark</code> and <code>StressRunner</code> in
+         * the test sources.
+         * @param fast whether to use the fast approximations
+         * @return this builder
+         */
+        public Builder withFastApproximation(boolean fast) {
+            this.fast = fast;
+            return this;
+        }
+
+        /**
+         * Find the rate with the given root finder in place of the
+         * NewtonRaphson builder.  The root finder is given the present value
+         * (or its scaled version under log space evaluation) and its
+         * derivative, and starts from the guess (or the fast approximation, if
+         * enabled).  The tolerances of this builder apply only to the
+         * NewtonRaphson builder.
+         * @param rootFinder the root finder, or null to use the NewtonRaphson
+         *                   builder
+         * @return this builder
+         */
+        public Builder withRootFinder(RootFinder rootFinder) {
+            this.rootFinder = rootFinder;
+            return this;
+        }
+
+        /**
+         * Set the rate at which {@link Xirr#analytics()} discounts the
+         * transactions for the net present value.  The default is zero.
+         * @param hurdleRate the hurdle rate
+         * @return this builder
+         * @throws IllegalArgumentException if the rate is not greater than
+         *                                  -100%
+         */
+        public Builder withHurdleRate(double hurdleRate) {
+            if (!(-1 < hurdleRate)) {
+                throw new IllegalArgumentException(
+                    "Hurdle rate must be greater than -100%: " + hurdleRate);
+            }
+            this.hurdleRate = hurdleRate;
+            return this;
+        }
+
+        /**
+         * Declare that the transactions are in ascending order of date (or
+         * instant), as is common for transactions read from a ledger.  The
+         * first and last transactions are then taken as the start and end
+         * without scanning for them; the order is still checked as the
+         * transactions are copied.  The default is false.
+         * @param sorted whether the transactions are in ascending order
+         * @return this builder
+         */
+        public Builder withSortedTransactions(boolean sorted) {
+            this.sorted = sorted;
+            return this;
+        }
+
+        /**
+         * Record the solves of {@link Xirr#xirr()} which exceed the thresholds
+         * of the given recorder, for replay with {@link SolveReplay}.  By
+         * default nothing is recorded.
+         * @param recorder the recorder, or null to record nothing
+         * @return this builder
+         */
+        public Builder withRecorder(SolveRecorder recorder) {
+            this.recorder = recorder;
             return this;
         }
 
         public Xirr build() {
-            return new Xirr(transactions, builder, guess, daysInYear);
+            final Xirr xirr = new Xirr(transactions, builder, guess, convention, sorted);
+            xirr.relativeTolerance = relativeTolerance;
+            xirr.stepTolerance = stepTolerance;
+            xirr.logSpace = logSpace;
+            xirr.fast = fast;
+            xirr.rootFinder = rootFinder;
+            xirr.hurdleRate = hurdleRate;
+            xirr.recorder = recorder;
+            return xirr;
         }
 
         /**
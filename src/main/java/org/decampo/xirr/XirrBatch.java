@@ -0,0 +1,310 @@
+package org.decampo.xirr;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Calculates the irregular rate of return of many series of transactions,
+ * solving each distinct shape of cash flows only once.
+ * <p>
+ * Scaling every amount of a series by the same positive factor does not
+ * change its rate of return, so e.g. accounts following the same model
+ * portfolio share a rate.  Each series is reduced to a canonical shape: its
+ * cash flows sorted by date with the amounts on each date combined, the
+ * amounts divided by the total deposits and rounded to a multiple of a small
+ * quantum, and the dates taken relative to the first date.  Series with equal
+ * shapes share the rate of the first such series.  Dates are only taken
+ * relative to the first date for the {@link DayCountConvention#actual(double)
+ * actual} day count conventions; other conventions depend on the actual dates
+ * so their shapes keep them.
+ * <p>
+ * Series with any transaction constructed from an instant (see
+ * {@link Transaction#Transaction(double, java.time.Instant)}) depend on the
+ * time of day, which shapes do not keep; each such series is solved on its
+ * own exactly as {@link Xirr} would, and counts as a shape of its own.
+ * <p>
+ * Series for which no rate can be computed yield <code>NaN</code>.
+ * <p>
+ * Example usage:
+ * <code>
+ *     XirrBatch.Result result = XirrBatch.builder()
+ *         .build()
+ *         .xirrs(accounts);
+ *     double[] rates = result.getRates();
+ * </code>
+ * @see Xirr
+ */
+public class XirrBatch {
+    private static final double DEFAULT_QUANTUM = 1e-12;
+
+    /**
+     * Convenience method for getting an instance of a {@link Builder}.
+     * @return new Builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private final DayCountConvention convention;
+    private final double quantum;
+
+    private XirrBatch(DayCountConvention convention, double quantum) {
+        this.convention = convention;
+        this.quantum = quantum;
+    }
+
+    /**
+     * Calculates the irregular rate of return of each of the given series.
+     * @param series the series of transactions
+     * @return the rates in the order of the series along with the statistics
+     *         of the deduplication
+     */
+    public Result xirrs(final List<? extends Collection<Transaction>> series) {
+        final boolean relative = convention instanceof DayCountConventions.Actual;
+        final Map<Shape, Double> solved = new HashMap<>();
+        final double[] rates = new double[series.size()];
+        int invalid = 0;
+        int intraday = 0;
+        for (int i = 0; i < rates.length; i++) {
+            if (isIntraday(series.get(i))) {
+                // Cash flows keep only the day, which would change the rate
+                rates[i] = xirr(series.get(i));
+                intraday++;
+                continue;
+            }
+            final CashFlows flows = CashFlows.of(series.get(i));
+            final Shape shape = Shape.of(flows, relative, quantum);
+            if (shape == null) {
+                rates[i] = Double.NaN;
+                invalid++;
+                continue;
+            }
+            Double rate = solved.get(shape);
+            if (rate == null) {
+                rate = xirr(flows);
+                solved.put(shape, rate);
+            }
+            rates[i] = rate;
+        }
+        return new Result(rates, solved.size() + intraday, invalid);
+    }
+
+    private static boolean isIntraday(final Collection<Transaction> txs) {
+        for (Transaction tx : txs) {
+            if (tx.intraday) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private double xirr(final Collection<Transaction> txs) {
+        try {
+            return Xirr.builder()
+                .withTransactions(txs)
+                .withDayCountConvention(convention)
+                .xirr();
+        } catch (ArithmeticException | IllegalArgumentException e) {
+            return Double.NaN;
+        }
+    }
+
+    private double xirr(final CashFlows flows) {
+        try {
+            return new Xirr(flows, null, null, convention).xirr();
+        } catch (ArithmeticException | IllegalArgumentException e) {
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * The canonical shape of a series of cash flows.
+     */
+    private static final class Shape {
+        private final long[] days;
+        private final long[] amounts;
+        private final int hash;
+
+        private Shape(final long[] days, final long[] amounts) {
+            this.days = days;
+            this.amounts = amounts;
+            this.hash = 31 * Arrays.hashCode(days) + Arrays.hashCode(amounts);
+        }
+
+        /**
+         * The shape of the given cash flows.
+         * @param flows the cash flows
+         * @param relative whether to take the days relative to the first day
+         * @param quantum the quantum to which to round the normalized amounts
+         * @return the shape, or null if the flows have no deposits
+         */
+        static Shape of(final CashFlows flows, final boolean relative, final double quantum) {
+            double deposits = 0;
+            for (double amount : flows.amounts) {
+                if (amount < 0) {
+                    deposits -= amount;
+                }
+            }
+            if (!(deposits > 0) || Double.isInfinite(deposits)) {
+                return null;
+            }
+            final int n = flows.size();
+            final long[] days = new long[n];
+            final long[] amounts = new long[n];
+            final long origin = relative ? flows.days[0] : 0;
+            for (int i = 0; i < n; i++) {
+                days[i] = flows.days[i] - origin;
+                // Compare the bits of the rounded double rather than a
+                // rounded long so that large multiples cannot overflow; add
+                // zero to fold negative zero into positive zero
+                amounts[i] = Double.doubleToLongBits(
+                    Math.rint(flows.amounts[i] / deposits / quantum) + 0.0);
+            }
+            return new Shape(days, amounts);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            } else if (!(o instanceof Shape)) {
+                return false;
+            }
+            final Shape other = (Shape) o;
+            return hash == other.hash
+                && Arrays.equals(days, other.days)
+                && Arrays.equals(amounts, other.amounts);
+        }
+    }
+
+    /**
+     * The rates of a batch along with the statistics of the deduplication.
+     */
+    public static class Result {
+        private final double[] rates;
+        private final int shapes;
+        private final int invalid;
+
+        Result(double[] rates, int shapes, int invalid) {
+            this.rates = rates;
+            this.shapes = shapes;
+            this.invalid = invalid;
+        }
+
+        /**
+         * The rate of each series, in the order supplied.
+         * @return the rates
+         */
+        public double[] getRates() {
+            return rates.clone();
+        }
+
+        /**
+         * The number of series in the batch.
+         * @return the number of series
+         */
+        public int getSeries() {
+            return rates.length;
+        }
+
+        /**
+         * The number of distinct shapes, i.e. the number of solves performed.
+         * @return the number of distinct shapes
+         */
+        public int getShapes() {
+            return shapes;
+        }
+
+        /**
+         * The number of series whose rate was shared with an earlier series
+         * of the same shape rather than solved.
+         * @return the number of duplicate series
+         */
+        public int getDuplicates() {
+            return rates.length - shapes - invalid;
+        }
+
+        /**
+         * The number of series rejected without a solve because they have no
+         * deposits.
+         * @return the number of invalid series
+         */
+        public int getInvalid() {
+            return invalid;
+        }
+
+        @Override
+        public String toString() {
+            return '{'
+                + "series=" + getSeries()
+                + ", shapes=" + shapes
+                + ", duplicates=" + getDuplicates()
+                + ", invalid=" + invalid + '}';
+        }
+    }
+
+    /**
+     * Builder for {@link XirrBatch} instances.
+     */
+    public static class Builder {
+        private DayCountConvention convention = DayCountConvention.ACT_365;
+        private double quantum = DEFAULT_QUANTUM;
+
+        public Builder() {
+        }
+
+        /**
+         * Use the given day count convention.  The default is
+         * {@link DayCountConvention#ACT_365}.
+         * @param convention the day count convention
+         * @return this builder
+         */
+        public Builder withDayCountConvention(DayCountConvention convention) {
+            this.convention = convention;
+            return this;
+        }
+
+        /**
+         * Set the quantum to which the amounts, divided by the total deposits,
+         * are rounded when comparing shapes.  Series whose normalized amounts
+         * differ by less than the quantum may share a rate.  The default is
+         * 1e-12.
+         * @param quantum the quantum
+         * @return this builder
+         * @throws IllegalArgumentException if the quantum is not positive
+         */
+        public Builder withQuantum(double quantum) {
+            if (!(quantum > 0)) {
+                throw new IllegalArgumentException("Quantum must be positive: " + quantum);
+            }
+            this.quantum = quantum;
+            return this;
+        }
+
+        /**
+         * Construct the batch.
+         * @return the batch
+         */
+        public XirrBatch build() {
+            return new XirrBatch(convention, quantum);
+        }
+
+        /**
+         * Convenience method for calculating the rates of the given series.
+         * @param series the series of transactions
+         * @return the rates along with the statistics of the deduplication
+         * @see XirrBatch#xirrs(List)
+         */
+        public Result xirrs(List<? extends Collection<Transaction>> series) {
+            return build().xirrs(series);
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package org.decampo.xirr;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.Collector;
+
+/**
+ * {@link Collector}s computing the irregular rate of return of the elements of
+ * a stream, e.g. the rate of return of each account of a portfolio:
+ * <pre>
+ * Map&lt;String, Double&gt; rates = transactions.parallelStream()
+ *     .collect(groupingBy(Tx::getAccount, XirrCollectors.xirr(Tx::getAmount, Tx::getDate)));
+ * </pre>
+ * <p>
+ * The collectors accumulate the amounts and instants of the transactions into
+ * primitive arrays along with the running details needed by {@link Xirr}, so
+ * no intermediate collection of transactions is built.  They may be used with
+ * parallel streams; the rate is computed in the finisher.  As with
+ * {@link Xirr}, the finisher throws an {@link IllegalArgumentException} if the
+ * transactions are invalid, e.g. if they are all on the same day.
+ * <p>
+ * The {@link #toXirr()} collectors keep the transactions in the encounter
+ * order of the stream, also when it is parallel, so the indices accepted by
+ * e.g. {@link Xirr#amountFor(int, double)} refer to the transactions in the
+ * order they were streamed.  The rate collectors do not depend on the order
+ * and are {@link Collector.Characteristics#UNORDERED unordered}.
+ */
+public final class XirrCollectors {
+    private XirrCollectors() {
+    }
+
+    /**
+     * Collector computing the irregular rate of return of a stream of
+     * transactions with the default day count convention.
+     * @return the collector
+     * @see Xirr#xirr()
+     */
+    public static Collector<Transaction, ?, Double> xirr() {
+        return xirr(DayCountConvention.ACT_365);
+    }
+
+    /**
+     * Collector computing the irregular rate of return of a stream of
+     * transactions with the given day count convention.
+     * @param convention the day count convention
+     * @return the collector
+     * @see Xirr#xirr()
+     */
+    public static Collector<Transaction, ?, Double> xirr(DayCountConvention convention) {
+        return Collector.of(
+            Buffer::new,
+            Buffer::add,
+            Buffer::combine,
+            buffer -> buffer.toXirr(convention).xirr(),
+            Collector.Characteristics.UNORDERED);
+    }
+
+    /**
+     * Collector computing the irregular rate of return of a stream of
+     * arbitrary elements, each representing a transaction of the given amount
+     * on the given day, with the default day count convention.  No
+     * {@link Transaction} instances are created.
+     * @param amount extracts the amount of each element, see
+     *               {@link Transaction} for the sign convention
+     * @param when extracts the day of each element
+     * @param <T> the type of the elements
+     * @return the collector
+     * @see Xirr#xirr()
+     */
+    public static <T> Collector<T, ?, Double> xirr(
+        ToDoubleFunction<? super T> amount,
+        Function<? super T, LocalDate> when) {
+        return xirr(amount, when, DayCountConvention.ACT_365);
+    }
+
+    /**
+     * Collector computing the irregular rate of return of a stream of
+     * arbitrary elements, each representing a transaction of the given amount
+     * on the given day, with the given day count convention.  No
+     * {@link Transaction} instances are created.
+     * @param amount extracts the amount of each element, see
+     *               {@link Transaction} for the sign convention
+     * @param when extracts the day of each element
+     * @param convention the day count convention
+     * @param <T> the type of the elements
+     * @return the collector
+     * @see Xirr#xirr()
+     */
+    public static <T> Collector<T, ?, Double> xirr(
+        ToDoubleFunction<? super T> amount,
+        Function<? super T, LocalDate> when,
+        DayCountConvention convention) {
+        return Collector.of(
+            Buffer::new,
+            (Buffer buffer, T t) -> buffer.add(amount.applyAsDouble(t), when.apply(t)),
+            Buffer::combine,
+            buffer -> buffer.toXirr(convention).xirr(),
+            Collector.Characteristics.UNORDERED);
+    }
+
+    /**
+     * Collector creating an {@link Xirr} instance for a stream of transactions
+     * with the default day count convention, for further analysis of the
+     * transactions.
+     * @return the collector
+     */
+    public static Collector<Transaction, ?, Xirr> toXirr() {
+        return toXirr(DayCountConvention.ACT_365);
+    }
+
+    /**
+     * Collector creating an {@link Xirr} instance for a stream of transactions
+     * with the given day count convention, for further analysis of the
+     * transactions.
+     * @param convention the day count convention
+     * @return the collector
+     */
+    public static Collector<Transaction, ?, Xirr> toXirr(DayCountConvention convention) {
+        return Collector.of(
+            Buffer::new,
+            Buffer::add,
+            Buffer::combine,
+            buffer -> buffer.toXirr(convention));
+    }
+
+    /**
+     * Growable primitive arrays of the amounts and instants of the
+     * transactions along with their {@link XirrDetails}.
+     */
+    private static final class Buffer {
+        private static final int INITIAL_CAPACITY = 16;
+
+        XirrDetails details = new XirrDetails();
+        double[] amounts = new double[INITIAL_CAPACITY];
+        long[] epochMillis = new long[INITIAL_CAPACITY];
+        int size;
+
+        void add(final Transaction tx) {
+            details.accumulate(tx);
+            append(tx.amount, tx.epochMilli);
+        }
+
+        void add(final double amount, final LocalDate when) {
+            final long epochMilli = when.toEpochDay() * Transaction.MILLIS_PER_DAY;
+            details.accumulate(amount, epochMilli, false);
+            append(amount, epochMilli);
+        }
+
+        private void append(final double amount, final long epochMilli) {
+            ensureCapacity(size + 1);
+            amounts[size] = amount;
+            epochMillis[size] = epochMilli;
+            size++;
+        }
+
+        private void ensureCapacity(final int capacity) {
+            if (capacity > amounts.length) {
+                final int length = Math.max(capacity, 2 * amounts.length);
+                amounts = Arrays.copyOf(amounts, length);
+                epochMillis = Arrays.copyOf(epochMillis, length);
+            }
+        }
+
+        /**
+         * Append the transactions of the other buffer after those of this
+         * one, so that the encounter order is kept.
+         */
+        Buffer combine(final Buffer other) {
+            ensureCapacity(size + other.size);
+            System.arraycopy(other.amounts, 0, amounts, size, other.size);
+            System.arraycopy(other.epochMillis, 0, epochMillis, size, other.size);
+            size += other.size;
+            details = details.combine(other.details);
+            return this;
+        }
+
+        Xirr toXirr(final DayCountConvention convention) {
+            details.finish();
+            return new Xirr(details,
+                Arrays.copyOf(amounts, size),
+                Arrays.copyOf(epochMillis, size),
+                convention);
+        }
+    }
+}
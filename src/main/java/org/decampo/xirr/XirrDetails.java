@@ -1,5 +1,6 @@
 package org.decampo.xirr;
 
+import java.time.Instant;
 import java.time.LocalDate;
 import java.util.stream.Collector;
 
@@ -13,31 +14,115 @@ class XirrDetails {
             XirrDetails::new,
             XirrDetails::accumulate,
             XirrDetails::combine,
-            Collector.Characteristics.IDENTITY_FINISH,
+            XirrDetails::finished,
             Collector.Characteristics.UNORDERED);
     }
 
     LocalDate start;
     LocalDate end;
+    long startMilli = Long.MAX_VALUE;
+    long endMilli = Long.MIN_VALUE;
+    boolean intraday;
     double minAmount = Double.POSITIVE_INFINITY;
     double maxAmount = Double.NEGATIVE_INFINITY;
     double total;
     double deposits;
+    /** The withdrawals on the end day, taken as the terminal value. */
+    double endWithdrawals;
+    /** The epoch day of {@link #end}, while accumulating epoch milliseconds. */
+    private long endDay = Long.MIN_VALUE;
 
+    /**
+     * Accumulate the given transaction; {@link #finish()} must be called once
+     * all the transactions are accumulated.
+     */
     public void accumulate(final Transaction tx) {
-        start = start != null && start.isBefore(tx.when) ? start : tx.when;
-        end = end != null && end.isAfter(tx.when) ? end : tx.when;
-        minAmount = Math.min(minAmount, tx.amount);
-        maxAmount = Math.max(maxAmount, tx.amount);
-        total += tx.amount;
-        if (tx.amount < 0) {
-            deposits -= tx.amount;
+        accumulate(tx.amount, tx.epochMilli, tx.intraday);
+    }
+
+    /**
+     * Accumulate a transaction given by its epoch millisecond, without
+     * comparing dates; {@link #finish()} must be called once all the
+     * transactions are accumulated.
+     */
+    void accumulate(final double amount, final long epochMilli, final boolean intraday) {
+        startMilli = Math.min(startMilli, epochMilli);
+        endMilli = Math.max(endMilli, epochMilli);
+        accumulateDay(amount, Math.floorDiv(epochMilli, Transaction.MILLIS_PER_DAY), intraday);
+    }
+
+    /**
+     * Accumulate the next of transactions declared to be in ascending order,
+     * so that the first is the start and the last the end without scanning
+     * for either; {@link #finish()} must be called once all the transactions
+     * are accumulated.
+     * @throws IllegalArgumentException if the transaction precedes the
+     *                                  previous one
+     */
+    void accumulateSorted(final double amount, final long epochMilli, final boolean intraday) {
+        if (startMilli == Long.MAX_VALUE) {
+            startMilli = epochMilli;
+        } else if (epochMilli < endMilli) {
+            throw new IllegalArgumentException(
+                "Transactions declared sorted are out of order at "
+                    + Instant.ofEpochMilli(epochMilli));
+        }
+        endMilli = epochMilli;
+        accumulateDay(amount, Math.floorDiv(epochMilli, Transaction.MILLIS_PER_DAY), intraday);
+    }
+
+    private void accumulateDay(final double amount, final long epochDay, final boolean intraday) {
+        if (epochDay > endDay) {
+            endDay = epochDay;
+            endWithdrawals = 0;
+        }
+        if (amount > 0 && epochDay == endDay) {
+            endWithdrawals += amount;
+        }
+        this.intraday |= intraday;
+        minAmount = Math.min(minAmount, amount);
+        maxAmount = Math.max(maxAmount, amount);
+        total += amount;
+        if (amount < 0) {
+            deposits -= amount;
         }
     }
 
+    /**
+     * Determine the start and end days of the transactions accumulated by
+     * their epoch milliseconds.
+     */
+    void finish() {
+        if (startMilli != Long.MAX_VALUE) {
+            start = LocalDate.ofEpochDay(Math.floorDiv(startMilli, Transaction.MILLIS_PER_DAY));
+            end = LocalDate.ofEpochDay(endDay);
+        }
+    }
+
+    private XirrDetails finished() {
+        finish();
+        return this;
+    }
+
+    /**
+     * Combine the transactions accumulated by another instance into this
+     * one; {@link #finish()} must be called once all are combined.
+     */
     public XirrDetails combine(final XirrDetails other) {
-        start = start.isBefore(other.start) ? start : other.start;
-        end = end.isAfter(other.end) ? end : other.end;
+        if (other.startMilli == Long.MAX_VALUE) {
+            return this;
+        } else if (startMilli == Long.MAX_VALUE) {
+            return other;
+        }
+        if (other.endDay > endDay) {
+            endDay = other.endDay;
+            endWithdrawals = other.endWithdrawals;
+        } else if (other.endDay == endDay) {
+            endWithdrawals += other.endWithdrawals;
+        }
+        startMilli = Math.min(startMilli, other.startMilli);
+        endMilli = Math.max(endMilli, other.endMilli);
+        intraday |= other.intraday;
         minAmount = Math.min(minAmount, other.minAmount);
         maxAmount = Math.max(maxAmount, other.maxAmount);
         total += other.total;
@@ -46,11 +131,11 @@ class XirrDetails {
     }
 
     public void validate() {
-        if (start == null) {
+        if (startMilli == Long.MAX_VALUE) {
             throw new IllegalArgumentException("No transactions to analyze");
         }
 
-        if (start.equals(end)) {
+        if (startMilli == endMilli) {
             throw new IllegalArgumentException(
                 "Transactions must not all be on the same day.");
         }
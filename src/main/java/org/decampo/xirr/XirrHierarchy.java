@@ -0,0 +1,233 @@
+package org.decampo.xirr;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Calculates the irregular rate of return for every node of a hierarchy, e.g.
+ * positions within accounts within households.
+ * <p>
+ * Each node may have transactions of its own and any number of children.  The
+ * transactions of a node are the union of its own transactions and those of
+ * its descendants.  Rather than concatenating the transactions at every level,
+ * each node's transactions are reduced to cash flows sorted by date with the
+ * amounts on each date combined, and a parent's cash flows are computed by
+ * merging those of its children.  Every node is thus computed in a single
+ * bottom-up pass in which the work of each level is shared with the levels
+ * above it.  The solve for each parent is started from the average of its
+ * children's rates, weighted by their deposits.
+ * <p>
+ * Nodes for which no rate can be computed yield <code>NaN</code>.
+ * <p>
+ * Since the cash flows are kept by day, intraday transactions (those with a
+ * time of day) are rejected rather than truncated to their day, which would
+ * yield rates differing from those of {@link Xirr}.
+ * <p>
+ * Example usage:
+ * <code>
+ *     Map&lt;String, Double&gt; rates = XirrHierarchy.&lt;String&gt;builder()
+ *         .withTransactions("position-1", position1)
+ *         .withTransactions("position-2", position2)
+ *         .withChild("account", "position-1")
+ *         .withChild("account", "position-2")
+ *         .xirrs();
+ * </code>
+ * @param <K> the type of the node identifiers
+ * @see Xirr
+ */
+public class XirrHierarchy<K> {
+    /**
+     * Convenience method for getting an instance of a {@link Builder}.
+     * @param <K> the type of the node identifiers
+     * @return new Builder
+     */
+    public static <K> Builder<K> builder() {
+        return new Builder<>();
+    }
+
+    private final Map<K, Collection<Transaction>> transactions;
+    private final Map<K, Set<K>> children;
+    private final NewtonRaphson.Builder builder;
+    private final DayCountConvention convention;
+
+    private XirrHierarchy(
+        Map<K, Collection<Transaction>> transactions,
+        Map<K, Set<K>> children,
+        NewtonRaphson.Builder builder,
+        DayCountConvention convention) {
+        this.transactions = transactions;
+        this.children = children;
+        this.builder = builder;
+        this.convention = convention;
+    }
+
+    /**
+     * Calculates the irregular rate of return of every node in the hierarchy.
+     * @return the rate of each node, with each node appearing after its
+     *         descendants
+     * @throws IllegalArgumentException if the hierarchy contains a cycle
+     */
+    public Map<K, Double> xirrs() {
+        final Set<K> nodes = new LinkedHashSet<>(transactions.keySet());
+        nodes.addAll(children.keySet());
+        final Calculation calculation = new Calculation();
+        for (K node : nodes) {
+            calculation.visit(node);
+        }
+        return calculation.rates;
+    }
+
+    /**
+     * The state of a single bottom-up pass over the hierarchy.
+     */
+    private class Calculation {
+        final Map<K, Double> rates = new LinkedHashMap<>();
+        final Map<K, CashFlows> flows = new HashMap<>();
+        final Map<K, Double> deposits = new HashMap<>();
+        final Set<K> visiting = new HashSet<>();
+
+        CashFlows visit(final K node) {
+            final CashFlows done = flows.get(node);
+            if (done != null) {
+                return done;
+            }
+            if (!visiting.add(node)) {
+                throw new IllegalArgumentException(
+                    "Hierarchy contains a cycle at " + node);
+            }
+
+            final List<CashFlows> parts = new ArrayList<>();
+            final Collection<Transaction> own = transactions.get(node);
+            if (own != null && !own.isEmpty()) {
+                parts.add(CashFlows.of(own));
+            }
+            double weightedRate = 0;
+            double weight = 0;
+            for (K child : children.getOrDefault(node, Collections.emptySet())) {
+                parts.add(visit(child));
+                final double rate = rates.get(child);
+                final double childDeposits = deposits.get(child);
+                if (!Double.isNaN(rate) && childDeposits > 0) {
+                    weightedRate += rate * childDeposits;
+                    weight += childDeposits;
+                }
+            }
+            final CashFlows merged = CashFlows.merge(parts);
+            final Double guess = weight > 0 ? weightedRate / weight : null;
+
+            visiting.remove(node);
+            flows.put(node, merged);
+            deposits.put(node, merged.details().deposits);
+            rates.put(node, xirr(merged, guess));
+            return merged;
+        }
+
+        private double xirr(final CashFlows merged, final Double guess) {
+            try {
+                if (guess != null) {
+                    try {
+                        return new Xirr(merged, builder, guess, convention).xirr();
+                    } catch (ArithmeticException | IllegalArgumentException e) {
+                        // Fall back to the usual guess below
+                    }
+                }
+                return new Xirr(merged, builder, null, convention).xirr();
+            } catch (ArithmeticException | IllegalArgumentException e) {
+                return Double.NaN;
+            }
+        }
+    }
+
+    /**
+     * Builder for {@link XirrHierarchy} instances.
+     * @param <K> the type of the node identifiers
+     */
+    public static class Builder<K> {
+        private final Map<K, Collection<Transaction>> transactions = new LinkedHashMap<>();
+        private final Map<K, Set<K>> children = new LinkedHashMap<>();
+        private NewtonRaphson.Builder builder = null;
+
+        private DayCountConvention convention = DayCountConvention.ACT_365;
+
+        public Builder() {
+        }
+
+        public Builder<K> withTransactions(K node, Transaction... txs) {
+            return withTransactions(node, Arrays.asList(txs));
+        }
+
+        /**
+         * Add the given transactions to those of the given node.
+         * @param node the node
+         * @param txs the transactions
+         * @return this builder
+         * @throws IllegalArgumentException if any transaction is intraday
+         */
+        public Builder<K> withTransactions(K node, Collection<Transaction> txs) {
+            for (Transaction tx : txs) {
+                if (tx.intraday) {
+                    throw new IllegalArgumentException(
+                        "Intraday transactions cannot be combined by day: " + tx.getInstant());
+                }
+            }
+            transactions.computeIfAbsent(node, k -> new ArrayList<>()).addAll(txs);
+            return this;
+        }
+
+        public Builder<K> withChild(K parent, K child) {
+            children.computeIfAbsent(parent, k -> new LinkedHashSet<>()).add(child);
+            return this;
+        }
+
+        public Builder<K> withNewtonRaphsonBuilder(NewtonRaphson.Builder builder) {
+            this.builder = builder;
+            return this;
+        }
+
+        /**
+         * Use the actual number of days over the given number of days per
+         * year.
+         * @param daysInYear the number of days per year
+         * @return this builder
+         * @throws IllegalArgumentException if daysInYear is not positive
+         * @see DayCountConvention#actual(double)
+         */
+        public Builder<K> withDaysInYear(int daysInYear) {
+            return withDayCountConvention(DayCountConvention.actual(daysInYear));
+        }
+
+        /**
+         * Use the given day count convention.  The default is
+         * {@link DayCountConvention#ACT_365}.
+         * @param convention the day count convention
+         * @return this builder
+         */
+        public Builder<K> withDayCountConvention(DayCountConvention convention) {
+            this.convention = convention;
+            return this;
+        }
+
+        public XirrHierarchy<K> build() {
+            return new XirrHierarchy<>(transactions, children, builder, convention);
+        }
+
+        /**
+         * Convenience method for building the XirrHierarchy instance and
+         * invoking {@link XirrHierarchy#xirrs()}.
+         * @return the rate of each node, with each node appearing after its
+         *         descendants
+         */
+        public Map<K, Double> xirrs() {
+            return build().xirrs();
+        }
+    }
+}
@@ -0,0 +1,314 @@
+package org.decampo.xirr;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.stream.IntStream;
+
+/**
+ * Calculates the irregular rate of return of many scenarios sharing the same
+ * dates, e.g. the simulated cash flows and terminal values of a fund.
+ * <p>
+ * The year fractions of the dates are computed once.  Each scenario is a
+ * vector of amounts, one per date, so the scenarios form a matrix of amounts
+ * by dates.  The scenarios are divided into chunks which are solved in
+ * parallel; within a chunk each scenario is solved starting from the rate of
+ * the previous one, which for similar scenarios is usually close.  Should a
+ * solve from the previous rate fail, the scenario is solved again from the
+ * usual guess.
+ * <p>
+ * Scenarios for which no rate can be computed yield <code>NaN</code>, and
+ * scenarios with no positive amounts but some zero amount yield -1 (a total
+ * loss), as with {@link Xirr}.
+ * <p>
+ * Example usage:
+ * <code>
+ *     XirrScenarios.Distribution distribution = XirrScenarios.builder()
+ *         .withDates(dates)
+ *         .build()
+ *         .xirrs(amounts);
+ *     double median = distribution.percentile(50);
+ * </code>
+ * @see Xirr
+ */
+public class XirrScenarios {
+    private static final int DEFAULT_CHUNK_SIZE = 256;
+
+    /**
+     * Convenience method for getting an instance of a {@link Builder}.
+     * @return new Builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /** The number of years from each date to the last date. */
+    private final double[] years;
+    /** The largest of {@link #years}. */
+    private final double maxYears;
+    private final RootFinder rootFinder;
+    private final int chunkSize;
+    private final boolean parallel;
+
+    private XirrScenarios(
+        long[] days,
+        DayCountConvention convention,
+        RootFinder rootFinder,
+        int chunkSize,
+        boolean parallel) {
+        final long start = Arrays.stream(days).min().orElse(0);
+        final long end = Arrays.stream(days).max().orElse(0);
+        if (start == end) {
+            throw new IllegalArgumentException(
+                "Dates must not all be the same day.");
+        }
+        years = new double[days.length];
+        convention.yearFractions(days, 0, days.length, end, years);
+        maxYears = convention.yearFraction(start, end);
+        this.rootFinder = rootFinder;
+        this.chunkSize = chunkSize;
+        this.parallel = parallel;
+    }
+
+    /**
+     * The number of dates, i.e. the number of amounts in each scenario.
+     * @return the number of dates
+     */
+    public int size() {
+        return years.length;
+    }
+
+    /**
+     * Calculates the irregular rate of return of each scenario.
+     * @param scenarios the amounts of each scenario, one per date in the
+     *                  order of the dates
+     * @return the distribution of the rates
+     * @throws IllegalArgumentException if a scenario does not have one amount
+     *                                  per date
+     */
+    public Distribution xirrs(final double[][] scenarios) {
+        for (double[] scenario : scenarios) {
+            if (scenario.length != years.length) {
+                throw new IllegalArgumentException(
+                    "Scenarios must have one amount per date: " + scenario.length);
+            }
+        }
+        final double[] rates = new double[scenarios.length];
+        final int chunks = (scenarios.length + chunkSize - 1) / chunkSize;
+        final IntStream stream = IntStream.range(0, chunks);
+        (parallel ? stream.parallel() : stream).forEach(chunk -> solve(
+            scenarios, rates,
+            chunk * chunkSize, Math.min(scenarios.length, (chunk + 1) * chunkSize)));
+        return new Distribution(rates);
+    }
+
+    private void solve(
+        final double[][] scenarios,
+        final double[] rates,
+        final int from,
+        final int to) {
+        final PresentValueEvaluator evaluator = new PresentValueEvaluator(null, years);
+        double previous = Double.NaN;
+        for (int k = from; k < to; k++) {
+            final double[] amounts = scenarios[k];
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            double total = 0;
+            double deposits = 0;
+            for (double amount : amounts) {
+                min = Math.min(min, amount);
+                max = Math.max(max, amount);
+                total += amount;
+                if (amount < 0) {
+                    deposits -= amount;
+                }
+            }
+            if (min >= 0 || max < 0) {
+                rates[k] = Double.NaN;
+                continue;
+            } else if (max == 0) {
+                rates[k] = -1; // Total loss
+                continue;
+            }
+            evaluator.reset(amounts);
+            double rate = Double.NaN;
+            if (!Double.isNaN(previous)) {
+                rate = solve(evaluator, previous);
+            }
+            if (Double.isNaN(rate)) {
+                rate = solve(evaluator, (total / deposits) / maxYears);
+            }
+            rates[k] = rate;
+            if (!Double.isNaN(rate)) {
+                previous = rate;
+            }
+        }
+    }
+
+    private double solve(final PresentValueEvaluator evaluator, final double guess) {
+        try {
+            return rootFinder.findRoot(evaluator, guess);
+        } catch (ArithmeticException | IllegalArgumentException e) {
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * The rates of a set of scenarios.
+     */
+    public static class Distribution {
+        private final double[] rates;
+        /** The rates other than <code>NaN</code>, in ascending order. */
+        private final double[] sorted;
+
+        Distribution(double[] rates) {
+            this.rates = rates;
+            this.sorted = Arrays.stream(rates).filter(r -> !Double.isNaN(r)).sorted().toArray();
+        }
+
+        /**
+         * The rate of each scenario, in the order supplied.
+         * @return the rates
+         */
+        public double[] getRates() {
+            return rates.clone();
+        }
+
+        /**
+         * The number of scenarios for which no rate could be computed.
+         * @return the number of failed scenarios
+         */
+        public int getFailures() {
+            return rates.length - sorted.length;
+        }
+
+        /**
+         * The mean of the rates, excluding failed scenarios.
+         * @return the mean rate, or <code>NaN</code> if every scenario failed
+         */
+        public double getMean() {
+            return sorted.length > 0 ? Arrays.stream(sorted).sum() / sorted.length : Double.NaN;
+        }
+
+        /**
+         * The given percentile of the rates, excluding failed scenarios,
+         * interpolating linearly between the closest ranks.
+         * @param percentile the percentile, from 0 (the minimum) to 100 (the
+         *                   maximum)
+         * @return the rate at the percentile, or <code>NaN</code> if every
+         *         scenario failed
+         * @throws IllegalArgumentException if the percentile is out of range
+         */
+        public double percentile(final double percentile) {
+            if (!(0 <= percentile && percentile <= 100)) {
+                throw new IllegalArgumentException(
+                    "Percentile must be between 0 and 100: " + percentile);
+            }
+            if (sorted.length == 0) {
+                return Double.NaN;
+            }
+            final double rank = percentile / 100 * (sorted.length - 1);
+            final int lower = (int) Math.floor(rank);
+            final int upper = (int) Math.ceil(rank);
+            return sorted[lower] + (rank - lower) * (sorted[upper] - sorted[lower]);
+        }
+
+        @Override
+        public String toString() {
+            return '{'
+                + "scenarios=" + rates.length
+                + ", failures=" + getFailures()
+                + ", mean=" + getMean()
+                + ", median=" + percentile(50) + '}';
+        }
+    }
+
+    /**
+     * Builder for {@link XirrScenarios} instances.
+     */
+    public static class Builder {
+        private long[] days = null;
+        private DayCountConvention convention = DayCountConvention.ACT_365;
+        private RootFinder rootFinder = null;
+        private int chunkSize = DEFAULT_CHUNK_SIZE;
+        private boolean parallel = true;
+
+        public Builder() {
+        }
+
+        public Builder withDates(LocalDate... dates) {
+            days = Arrays.stream(dates).mapToLong(LocalDate::toEpochDay).toArray();
+            return this;
+        }
+
+        public Builder withDates(Collection<LocalDate> dates) {
+            days = dates.stream().mapToLong(LocalDate::toEpochDay).toArray();
+            return this;
+        }
+
+        /**
+         * Use the given day count convention.  The default is
+         * {@link DayCountConvention#ACT_365}.
+         * @param convention the day count convention
+         * @return this builder
+         */
+        public Builder withDayCountConvention(DayCountConvention convention) {
+            this.convention = convention;
+            return this;
+        }
+
+        /**
+         * Solve each scenario with the given root finder.  The default is a
+         * {@link NewtonRaphson} instance with the default settings.
+         * @param rootFinder the root finder, must be thread-safe if the
+         *                   scenarios are solved in parallel
+         * @return this builder
+         */
+        public Builder withRootFinder(RootFinder rootFinder) {
+            this.rootFinder = rootFinder;
+            return this;
+        }
+
+        /**
+         * Set the number of consecutive scenarios solved together, each from
+         * the rate of the previous one.  The default is 256.
+         * @param chunkSize the number of scenarios per chunk
+         * @return this builder
+         * @throws IllegalArgumentException if the chunk size is not positive
+         */
+        public Builder withChunkSize(int chunkSize) {
+            if (chunkSize <= 0) {
+                throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+            }
+            this.chunkSize = chunkSize;
+            return this;
+        }
+
+        /**
+         * Whether to solve the chunks in parallel over the common fork-join
+         * pool.  The default is true.  The results do not depend on whether
+         * the chunks are solved in parallel.
+         * @param parallel whether to solve the chunks in parallel
+         * @return this builder
+         */
+        public Builder withParallel(boolean parallel) {
+            this.parallel = parallel;
+            return this;
+        }
+
+        /**
+         * Construct the scenario engine.
+         * @return the scenario engine
+         * @throws IllegalArgumentException if no dates were given or the dates
+         *                                  are all the same day
+         */
+        public XirrScenarios build() {
+            if (days == null || days.length < 2) {
+                throw new IllegalArgumentException("Must have at least two dates");
+            }
+            return new XirrScenarios(days, convention,
+                rootFinder != null ? rootFinder : NewtonRaphson.builder().build(),
+                chunkSize, parallel);
+        }
+    }
+}
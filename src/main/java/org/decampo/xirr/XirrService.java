@@ -0,0 +1,335 @@
+package org.decampo.xirr;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Asynchronous facade for computing the irregular rate of return of many
+ * series of transactions concurrently.
+ * <p>
+ * Requests are queued and drained by at most <code>parallelism</code> workers,
+ * each of which solves up to <code>batchSize</code> queued requests in turn
+ * before yielding, so that a burst of requests is handled in a few batches
+ * rather than one task per request.  The workers run on virtual threads when
+ * the runtime supports them and on a fixed pool of daemon platform threads
+ * otherwise.
+ * <p>
+ * Admission is bounded: once <code>maxPending</code> requests are queued or
+ * being solved, further requests fail immediately with a
+ * {@link RejectedExecutionException}.  When a timeout is configured, a request
+ * which has not completed in time fails with a {@link TimeoutException} and
+ * its Newton-Raphson iteration is abandoned at the next iteration via a
+ * {@link CancellationToken}.
+ * <p>
+ * Example usage:
+ * <code>
+ *     try (XirrService service = XirrService.builder()
+ *             .withTimeout(Duration.ofMillis(100))
+ *             .build()) {
+ *         CompletableFuture&lt;Double&gt; rate = service.xirr(transactions);
+ *     }
+ * </code>
+ * <p>
+ * This class is thread-safe.
+ * @see Xirr
+ */
+public class XirrService implements AutoCloseable {
+    /**
+     * Convenience method for getting an instance of a {@link Builder}.
+     * @return new Builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private final Queue<Request> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger workers = new AtomicInteger();
+    private final Semaphore admission;
+    private final Executor executor;
+    private final ExecutorService ownedExecutor;
+    private final ScheduledExecutorService timer;
+    private final Supplier<NewtonRaphson.Builder> builders;
+    private final DayCountConvention convention;
+    private final long timeoutNanos;
+    private final int parallelism;
+    private final int batchSize;
+    private volatile boolean closed;
+
+    private XirrService(Builder b) {
+        if (b.maxPending <= 0 || b.parallelism <= 0 || b.batchSize <= 0) {
+            throw new IllegalArgumentException(
+                "Pending, parallelism and batch size must be positive");
+        }
+        if (b.timeout != null && (b.timeout.isNegative() || b.timeout.isZero())) {
+            throw new IllegalArgumentException(
+                "Timeout must be positive: " + b.timeout);
+        }
+        admission = new Semaphore(b.maxPending);
+        parallelism = b.parallelism;
+        batchSize = b.batchSize;
+        convention = b.convention;
+        builders = b.builders;
+        timeoutNanos = b.timeout != null ? b.timeout.toNanos() : 0;
+        if (b.executor != null) {
+            executor = b.executor;
+            ownedExecutor = null;
+        } else {
+            ownedExecutor = newExecutor(parallelism);
+            executor = ownedExecutor;
+        }
+        timer = timeoutNanos > 0 ? Executors.newSingleThreadScheduledExecutor(r -> {
+            final Thread thread = new Thread(r, "xirr-service-timer");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+    }
+
+    /**
+     * Create an executor running on virtual threads if the runtime supports
+     * them, otherwise on a fixed pool of daemon platform threads.
+     */
+    private static ExecutorService newExecutor(final int parallelism) {
+        try {
+            return (ExecutorService) Executors.class
+                .getMethod("newVirtualThreadPerTaskExecutor")
+                .invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            final AtomicInteger count = new AtomicInteger();
+            return Executors.newFixedThreadPool(parallelism, r -> {
+                final Thread thread = new Thread(r,
+                    "xirr-service-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Asynchronously calculate the irregular rate of return of the given
+     * transactions.
+     * @param txs the transactions
+     * @return a future completed with the rate, or exceptionally with the
+     *         exception thrown by {@link Xirr}, a {@link TimeoutException} or a
+     *         {@link RejectedExecutionException}
+     */
+    public CompletableFuture<Double> xirr(final Collection<Transaction> txs) {
+        final CompletableFuture<Double> future = new CompletableFuture<>();
+        if (closed) {
+            future.completeExceptionally(new RejectedExecutionException(
+                "xirr service closed"));
+            return future;
+        }
+        if (!admission.tryAcquire()) {
+            future.completeExceptionally(new RejectedExecutionException(
+                "Too many pending xirr requests"));
+            return future;
+        }
+        final Request request = new Request(txs, future);
+        if (timer != null) {
+            final ScheduledFuture<?> timeout;
+            try {
+                timeout = timer.schedule(
+                    () -> future.completeExceptionally(new TimeoutException(
+                        "xirr request timed out")),
+                    timeoutNanos, TimeUnit.NANOSECONDS);
+            } catch (RejectedExecutionException e) {
+                // Closed concurrently
+                admission.release();
+                future.completeExceptionally(e);
+                return future;
+            }
+            future.whenComplete((rate, e) -> timeout.cancel(false));
+        }
+        queue.add(request);
+        if (closed) {
+            // Closed concurrently, after close() failed the queued requests
+            failQueued(new RejectedExecutionException("xirr service closed"));
+            return future;
+        }
+        dispatch();
+        return future;
+    }
+
+    /**
+     * Start a worker if there are queued requests and fewer than
+     * <code>parallelism</code> workers.
+     */
+    private void dispatch() {
+        int count;
+        while (!queue.isEmpty() && (count = workers.get()) < parallelism) {
+            if (workers.compareAndSet(count, count + 1)) {
+                try {
+                    executor.execute(this::drain);
+                } catch (RejectedExecutionException e) {
+                    workers.decrementAndGet();
+                    failQueued(e);
+                }
+                return;
+            }
+        }
+    }
+
+    private void drain() {
+        try {
+            Request request;
+            for (int i = 0; i < batchSize && (request = queue.poll()) != null; i++) {
+                request.run();
+            }
+        } finally {
+            workers.decrementAndGet();
+            dispatch();
+        }
+    }
+
+    private void failQueued(final Throwable cause) {
+        Request request;
+        while ((request = queue.poll()) != null) {
+            request.future.completeExceptionally(cause);
+            admission.release();
+        }
+    }
+
+    /**
+     * Stop accepting work.  Requests still queued, and requests made
+     * afterwards, fail with a {@link RejectedExecutionException}.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        if (ownedExecutor != null) {
+            ownedExecutor.shutdown();
+        }
+        if (timer != null) {
+            timer.shutdownNow();
+        }
+        failQueued(new RejectedExecutionException("xirr service closed"));
+    }
+
+    private class Request {
+        final Collection<Transaction> transactions;
+        final CompletableFuture<Double> future;
+        final CancellationToken token = new CancellationToken();
+
+        Request(Collection<Transaction> transactions, CompletableFuture<Double> future) {
+            this.transactions = transactions;
+            this.future = future;
+            future.whenComplete((rate, e) -> token.cancel());
+        }
+
+        void run() {
+            try {
+                if (!future.isDone()) {
+                    future.complete(Xirr.builder()
+                        .withTransactions(transactions)
+                        .withDayCountConvention(convention)
+                        .withNewtonRaphsonBuilder(builders.get()
+                            .withCancellationToken(token))
+                        .xirr());
+                }
+            } catch (RuntimeException e) {
+                future.completeExceptionally(e);
+            } finally {
+                admission.release();
+            }
+        }
+    }
+
+    /**
+     * Builder for {@link XirrService} instances.
+     */
+    public static class Builder {
+        private int maxPending = 10_000;
+        private int parallelism = Runtime.getRuntime().availableProcessors();
+        private int batchSize = 64;
+        private Duration timeout = null;
+        private Executor executor = null;
+        private Supplier<NewtonRaphson.Builder> builders = NewtonRaphson::builder;
+
+        private DayCountConvention convention = DayCountConvention.ACT_365;
+
+        public Builder() {
+        }
+
+        public Builder withMaxPending(int maxPending) {
+            this.maxPending = maxPending;
+            return this;
+        }
+
+        public Builder withParallelism(int parallelism) {
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        public Builder withBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        public Builder withTimeout(Duration timeout) {
+            this.timeout = timeout;
+            return this;
+        }
+
+        /**
+         * Run the workers on the given executor rather than one owned by the
+         * service.  The executor is not shut down when the service is closed.
+         * @param executor the executor
+         * @return this builder
+         */
+        public Builder withExecutor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * Supply a fresh {@link NewtonRaphson.Builder} for each request.
+         * @param builders supplier of NewtonRaphson builders
+         * @return this builder
+         */
+        public Builder withNewtonRaphsonBuilders(Supplier<NewtonRaphson.Builder> builders) {
+            this.builders = builders;
+            return this;
+        }
+
+        /**
+         * Use the actual number of days over the given number of days per
+         * year.
+         * @param daysInYear the number of days per year
+         * @return this builder
+         * @throws IllegalArgumentException if daysInYear is not positive
+         * @see DayCountConvention#actual(double)
+         */
+        public Builder withDaysInYear(int daysInYear) {
+            return withDayCountConvention(DayCountConvention.actual(daysInYear));
+        }
+
+        /**
+         * Use the given day count convention.  The default is
+         * {@link DayCountConvention#ACT_365}.
+         * @param convention the day count convention
+         * @return this builder
+         */
+        public Builder withDayCountConvention(DayCountConvention convention) {
+            this.convention = convention;
+            return this;
+        }
+
+        public XirrService build() {
+            return new XirrService(this);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package org.decampo.xirr;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class BigDecimalMathTest {
+    private static final MathContext MC = MathContext.DECIMAL128;
+
+    @Test
+    public void exp() {
+        assertEquals(new BigDecimal("2.718281828459045235360287471352662"),
+            BigDecimalMath.exp(BigDecimal.ONE, MC));
+        assertEquals(new BigDecimal("4.539992976248485153559151556055061E-5"),
+            BigDecimalMath.exp(BigDecimal.TEN.negate(), MC));
+        assertEquals(BigDecimal.ONE, BigDecimalMath.exp(BigDecimal.ZERO, MC));
+    }
+
+    @Test
+    public void log() {
+        assertEquals(new BigDecimal("0.6931471805599453094172321214581766"),
+            BigDecimalMath.log(BigDecimal.valueOf(2), MC));
+        assertEquals(new BigDecimal("0.09531017980432486004395212328076509"),
+            BigDecimalMath.log(new BigDecimal("1.1"), MC));
+        assertEquals(BigDecimal.ZERO, BigDecimalMath.log(BigDecimal.ONE, MC));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void log_not_positive() {
+        BigDecimalMath.log(BigDecimal.ZERO, MC);
+    }
+}
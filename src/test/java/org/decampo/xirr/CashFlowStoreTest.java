@@ -0,0 +1,94 @@
+package org.decampo.xirr;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CashFlowStoreTest {
+
+    @Test
+    public void round_trip() {
+        // Small segments, so that series span several segments and one
+        // series needs a segment of its own
+        final CashFlowStore store = CashFlowStore.builder()
+            .withSegmentSize(256)
+            .build();
+        final List<List<Transaction>> all = new ArrayList<>();
+        for (int k = 0; k < 50; k++) {
+            final List<Transaction> txs = new ArrayList<>();
+            LocalDate date = LocalDate.parse("1965-03-01").plusDays(17 * k);
+            for (int month = 0; month <= k; month++) {
+                txs.add(new Transaction(-100 - month, date));
+                date = date.plusMonths(1).plusDays(k % 3);
+            }
+            txs.add(new Transaction(200 * (k + 1), date.plusYears(k)));
+            all.add(txs);
+            assertEquals(k, store.add(txs));
+        }
+        assertEquals(50, store.size());
+        assertTrue(store.bytes() > 0);
+
+        for (int k = 0; k < all.size(); k++) {
+            final CashFlows expected = CashFlows.of(all.get(k));
+            final CashFlows actual = store.read(k);
+            assertArrayEquals(expected.days, actual.days);
+            assertArrayEquals(expected.amounts, actual.amounts, 0);
+            assertEquals(new Xirr(all.get(k)).xirr(), store.xirr(k), 1e-12);
+        }
+    }
+
+    @Test
+    public void add_arrays() {
+        final CashFlowStore store = CashFlowStore.builder().build();
+        final long start = LocalDate.parse("2010-01-01").toEpochDay();
+        final int id = store.add(
+            new long[] {start, start, start + 365},
+            new double[] {-400, -600, 1100});
+        assertEquals(0.1, store.xirr(id), NewtonRaphson.TOLERANCE);
+        assertEquals(new Xirr(Arrays.asList(
+                new Transaction(-1000, "2010-01-01"),
+                new Transaction( 1100, "2011-01-01"))).xirr(),
+            store.toXirr(id).xirr(), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void add_unsorted() {
+        CashFlowStore.builder().build().add(new long[] {2, 1}, new double[] {-1, 1});
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void no_such_series() {
+        CashFlowStore.builder().build().xirr(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void intraday_rejected() {
+        CashFlowStore.builder().build().add(Arrays.asList(
+            new Transaction(-1000, Instant.parse("2020-01-01T00:00:00Z")),
+            new Transaction( 1100, Instant.parse("2020-01-02T23:00:00Z"))));
+    }
+
+    @Test
+    public void analytics_use_net_daily_amounts() {
+        final List<Transaction> txs = Arrays.asList(
+            new Transaction(-1000, "2010-01-01"),
+            new Transaction(-500, "2010-07-01"),
+            new Transaction( 200, "2010-07-01"),
+            new Transaction(1500, "2011-01-01"));
+        final CashFlowStore store = CashFlowStore.builder().build();
+        final Xirr.Analytics stored = store.toXirr(store.add(txs)).analytics();
+        final Xirr.Analytics individual = new Xirr(txs).analytics();
+        assertEquals(individual.getXirr(), stored.getXirr(), NewtonRaphson.TOLERANCE);
+        assertEquals(1500, individual.getPaidIn(), 0);
+        assertEquals(1300, stored.getPaidIn(), 0);
+        assertEquals(0, stored.getDistributions(), 0);
+        assertEquals(1500, stored.getResidualValue(), 0);
+    }
+}
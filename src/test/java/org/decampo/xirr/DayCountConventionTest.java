@@ -0,0 +1,94 @@
+package org.decampo.xirr;
+
+import java.time.LocalDate;
+import org.junit.Test;
+
+import static org.decampo.xirr.NewtonRaphson.TOLERANCE;
+import static org.junit.Assert.assertEquals;
+
+public class DayCountConventionTest {
+
+    private static long day(String date) {
+        return LocalDate.parse(date).toEpochDay();
+    }
+
+    @Test
+    public void act_365() {
+        assertEquals(1, DayCountConvention.ACT_365.yearFraction(
+            day("2010-01-01"), day("2011-01-01")), 0);
+        assertEquals(366 / 365.0, DayCountConvention.ACT_365.yearFraction(
+            day("2012-01-01"), day("2013-01-01")), 0);
+    }
+
+    @Test
+    public void act_360() {
+        assertEquals(365 / 360.0, DayCountConvention.ACT_360.yearFraction(
+            day("2010-01-01"), day("2011-01-01")), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void actual_not_positive() {
+        DayCountConvention.actual(0);
+    }
+
+    @Test
+    public void act_act() {
+        final DayCountConvention c = DayCountConvention.ACT_ACT;
+        assertEquals(1, c.yearFraction(day("2012-01-01"), day("2013-01-01")), 1e-15);
+        assertEquals(2, c.yearFraction(day("2011-01-01"), day("2013-01-01")), 1e-15);
+        // 2011-07-01 to 2012-07-01: 184 days in 2011, 182 in 2012
+        assertEquals(184 / 365.0 + 182 / 366.0,
+            c.yearFraction(day("2011-07-01"), day("2012-07-01")), 1e-15);
+        assertEquals(-(184 / 365.0 + 182 / 366.0),
+            c.yearFraction(day("2012-07-01"), day("2011-07-01")), 1e-15);
+    }
+
+    @Test
+    public void thirty_360() {
+        final DayCountConvention c = DayCountConvention.THIRTY_360;
+        assertEquals(1, c.yearFraction(day("2010-01-31"), day("2011-01-31")), 1e-15);
+        assertEquals(0.5, c.yearFraction(day("2010-01-31"), day("2010-07-31")), 1e-15);
+        assertEquals(29 / 360.0,
+            c.yearFraction(day("2010-01-01"), day("2010-01-30")), 1e-15);
+    }
+
+    @Test
+    public void bulk_matches_scalar() {
+        final long[] starts = {
+            day("2010-01-31"), day("2010-01-31"), day("2011-02-28"),
+            day("2012-02-29"), day("2012-12-31"), day("2014-06-15")
+        };
+        final long end = day("2014-06-15");
+        for (DayCountConvention c : new DayCountConvention[] {
+            DayCountConvention.ACT_365, DayCountConvention.ACT_360,
+            DayCountConvention.ACT_ACT, DayCountConvention.THIRTY_360}) {
+            final double[] fractions = new double[starts.length];
+            c.yearFractions(starts, 1, starts.length, end, fractions);
+            assertEquals(0, fractions[0], 0);
+            for (int i = 1; i < starts.length; i++) {
+                assertEquals(c + " " + i, c.yearFraction(starts[i], end),
+                    fractions[i], 1e-15);
+            }
+        }
+    }
+
+    @Test
+    public void xirr_with_convention() {
+        final double xirr = Xirr.builder()
+            .withTransactions(
+                new Transaction(-1000, "2010-01-01"),
+                new Transaction(  900, "2011-01-01"))
+            .withDayCountConvention(DayCountConvention.ACT_360)
+            .xirr();
+        assertEquals(-0.0987, xirr, TOLERANCE);
+
+        // A leap year counts as a single year under ACT/ACT
+        final double actAct = Xirr.builder()
+            .withTransactions(
+                new Transaction(-1000, "2012-01-01"),
+                new Transaction( 1100, "2013-01-01"))
+            .withDayCountConvention(DayCountConvention.ACT_ACT)
+            .xirr();
+        assertEquals(0.1, actAct, TOLERANCE);
+    }
+}
@@ -1,5 +1,6 @@
 package org.decampo.xirr;
 
+import java.time.Duration;
 import org.junit.Test;
 
 import static org.decampo.xirr.NewtonRaphson.TOLERANCE;
@@ -45,6 +46,24 @@ public class NewtonRaphsonTest {
         assertEquals(-3, nr.findRoot(.49), TOLERANCE);
     }
 
+    @Test
+    public void rootFinder() throws Exception {
+        final RootFinder rootFinder = NewtonRaphson.builder().build();
+        final RootFinder.Evaluator quadratic = new RootFinder.Evaluator() {
+            @Override
+            public double value(double x) {
+                return (x - 4) * (x + 3);
+            }
+
+            @Override
+            public double derivative(double x) {
+                return 2 * x - 1;
+            }
+        };
+        assertEquals(4, rootFinder.findRoot(quadratic, 10), TOLERANCE);
+        assertEquals(-3, rootFinder.findRoot(quadratic, -10), TOLERANCE);
+    }
+
     @Test(expected = ZeroValuedDerivativeException.class)
     public void failToConverge() throws Exception {
         NewtonRaphson nr = NewtonRaphson.builder()
@@ -167,4 +186,115 @@ public class NewtonRaphsonTest {
         assertEquals(1.414_213_562_3, nr.inverse(2, 2), tolerance);
     }
 
+    @Test
+    public void solve_converged() throws Exception {
+        final NewtonRaphson.Result result = NewtonRaphson.builder()
+            .withFunction(x -> x * x)
+            .withDerivative(x -> 2 * x)
+            .build()
+            .solve(4, 4);
+        assertTrue(result.isConverged());
+        assertEquals(2, result.getCandidate(), TOLERANCE);
+        assertEquals(0, result.getResidual(), TOLERANCE);
+    }
+
+    @Test
+    public void solve_iterations_exhausted_returns_best() throws Exception {
+        // Newton's method diverges for the cube root (each step doubles the
+        // distance from the root) so the best candidate is the guess
+        final NewtonRaphson.Result result = NewtonRaphson.builder()
+            .withFunction(x -> Math.cbrt(x))
+            .withDerivative(x -> 1 / (3 * Math.cbrt(x * x)))
+            .withIterations(5)
+            .build()
+            .solve(0, 1);
+        assertEquals(NewtonRaphson.Status.ITERATIONS_EXHAUSTED, result.getStatus());
+        assertEquals(5, result.getIterations());
+        assertEquals(1, result.getCandidate(), TOLERANCE);
+        assertEquals(1, result.getResidual(), TOLERANCE);
+    }
+
+    @Test
+    public void timeLimit() throws Exception {
+        final NewtonRaphson nr = NewtonRaphson.builder()
+            .withFunction(x -> 2 * Math.signum(x))
+            .withDerivative(x -> 1) // Wrong on purpose
+            .withIterations(Long.MAX_VALUE)
+            .withTimeLimit(Duration.ofMillis(10))
+            .build();
+        final NewtonRaphson.Result result = nr.solve(0, 1);
+        assertEquals(NewtonRaphson.Status.TIME_LIMIT, result.getStatus());
+        assertEquals(2, Math.abs(result.getResidual()), TOLERANCE);
+        try {
+            nr.findRoot(1);
+            fail("Expected time limit to be exceeded");
+        } catch (BudgetExceededException e) {
+            assertEquals(NewtonRaphson.Status.TIME_LIMIT, e.getStatus());
+            assertEquals(1, e.getInitialGuess(), TOLERANCE);
+            assertEquals(2, Math.abs(e.getResidual()), TOLERANCE);
+        }
+    }
+
+    @Test
+    public void cancellationToken() throws Exception {
+        final CancellationToken token = new CancellationToken();
+        final NewtonRaphson nr = NewtonRaphson.builder()
+            .withFunction(x -> {
+                token.cancel();
+                return x * x;
+            })
+            .withDerivative(x -> 2 * x)
+            .withCancellationToken(token)
+            .build();
+        try {
+            nr.inverse(4, 4);
+            fail("Expected cancellation");
+        } catch (BudgetExceededException e) {
+            assertEquals(NewtonRaphson.Status.CANCELLED, e.getStatus());
+            assertEquals(1, e.getIterations());
+            assertEquals(4, e.getCandidate(), TOLERANCE);
+            assertEquals(12, e.getResidual(), TOLERANCE);
+        }
+    }
+
+    @Test
+    public void relativeTolerance() throws Exception {
+        final NewtonRaphson.Builder builder = NewtonRaphson.builder()
+            .withFunction(x -> x * x)
+            .withDerivative(x -> 2 * x);
+        final NewtonRaphson.Result absolute = builder.build().solve(1e18, 1e10);
+        final NewtonRaphson.Result relative = builder
+            .withRelativeTolerance(1e-6)
+            .build()
+            .solve(1e18, 1e10);
+        assertTrue(relative.isConverged());
+        assertEquals(1e9, relative.getCandidate(), 1e9 * 1e-6);
+        assertTrue(relative.getIterations() < absolute.getIterations());
+
+        // With a scale, the tolerance is relative to the scale rather than
+        // the target
+        final NewtonRaphson.Result scaled = builder
+            .withRelativeTolerance(1e-6)
+            .withScale(1e-6)
+            .build()
+            .solve(4, 4);
+        assertEquals(2, scaled.getCandidate(), 1e-12);
+        assertTrue(Math.abs(scaled.getResidual()) < 1e-12);
+    }
+
+    @Test
+    public void stepTolerance() throws Exception {
+        final NewtonRaphson.Result result = NewtonRaphson.builder()
+            .withFunction(x -> x * x)
+            .withDerivative(x -> 2 * x)
+            .withTolerance(0)
+            .withStepTolerance(1e-3)
+            .build()
+            .solve(2, 2);
+        assertTrue(result.isConverged());
+        assertEquals(1.414_213_562_3, result.getCandidate(), 1e-6);
+        assertEquals(result.getCandidate() * result.getCandidate() - 2,
+            result.getResidual(), 0);
+    }
+
 }
@@ -0,0 +1,97 @@
+package org.decampo.xirr;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+import static org.decampo.xirr.NewtonRaphson.TOLERANCE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PresentValueSurrogateTest {
+
+    private static Xirr monthly() {
+        return new Xirr(transactions());
+    }
+
+    private static List<Transaction> transactions() {
+        final Random random = new Random(11);
+        final List<Transaction> txs = new ArrayList<>();
+        LocalDate date = LocalDate.parse("2005-03-10");
+        double deposits = 0;
+        for (int i = 0; i < 120; i++) {
+            final double amount = 500 + random.nextDouble() * 1000;
+            txs.add(new Transaction(-amount, date.plusDays(random.nextInt(28))));
+            deposits += amount;
+            date = date.plusMonths(1);
+        }
+        txs.add(new Transaction(1.8 * deposits, date));
+        return txs;
+    }
+
+    @Test
+    public void presentValue_within_bound() {
+        final Xirr xirr = monthly();
+        final PresentValueSurrogate surrogate = xirr.surrogate(-0.5, 1);
+        assertTrue(surrogate.toString(), surrogate.getErrorBound() <= 1e-9 * 1e5 * 2);
+        for (int i = 0; i <= 1000; i++) {
+            final double rate = -0.5 + 1.5 * i / 1000;
+            assertEquals(xirr.presentValue(rate), surrogate.presentValue(rate),
+                surrogate.getErrorBound());
+            assertEquals(xirr.derivative(rate), surrogate.derivative(rate),
+                1e-6 * Math.abs(xirr.derivative(rate)));
+        }
+    }
+
+    @Test
+    public void exact_outside_interval() {
+        final Xirr xirr = monthly();
+        final PresentValueSurrogate surrogate = xirr.surrogate(0, 0.5);
+        assertEquals(xirr.presentValue(-0.2), surrogate.presentValue(-0.2), 0);
+        assertEquals(xirr.derivative(0.7), surrogate.derivative(0.7), 0);
+    }
+
+    @Test
+    public void rateFor() {
+        final Xirr xirr = monthly();
+        final PresentValueSurrogate surrogate = xirr.surrogate(-0.5, 1);
+        final double rate = xirr.xirr();
+        final double estimate = surrogate.estimateRateFor(0);
+        assertEquals(rate, estimate, Math.max(TOLERANCE, 2 * surrogate.getRateErrorBound(estimate)));
+        assertEquals(rate, surrogate.rateFor(0), TOLERANCE);
+        for (double target : new double[] {-20_000, 5_000, 40_000}) {
+            assertEquals(xirr.rateFor(target), surrogate.rateFor(target), TOLERANCE);
+        }
+    }
+
+    @Test
+    public void coarse_tolerance_uses_fewer_pieces() {
+        final Xirr xirr = monthly();
+        final PresentValueSurrogate fine = xirr.surrogate(-0.9, 5);
+        final PresentValueSurrogate coarse = xirr.surrogate(-0.9, 5, 1e-3);
+        assertTrue(coarse.getPieces() <= fine.getPieces());
+        assertTrue(coarse.getErrorBound() <= 1e-3 * xirr.analytics().getPaidIn());
+        for (int i = 0; i <= 1000; i++) {
+            final double rate = Math.expm1(Math.log(0.1) + Math.log(60) * i / 1000);
+            final double exact = xirr.presentValue(rate);
+            assertEquals(exact, fine.presentValue(rate), fine.getErrorBound());
+            assertEquals(exact, coarse.presentValue(rate), coarse.getErrorBound());
+        }
+    }
+
+    @Test(expected = NonconvergenceException.class)
+    public void estimate_uses_configured_newton_raphson() {
+        final Xirr xirr = Xirr.builder()
+            .withTransactions(transactions())
+            .withNewtonRaphsonBuilder(NewtonRaphson.builder().withIterations(1))
+            .build();
+        xirr.surrogate(-0.5, 1).estimateRateFor(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalid_interval() {
+        monthly().surrogate(-1, 0.5);
+    }
+}
@@ -0,0 +1,168 @@
+package org.decampo.xirr;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares evaluating the present value and its derivative at many rates by
+ * looping over {@link Xirr#presentValue(double)} and
+ * {@link Xirr#derivative(double)} against
+ * {@link Xirr#presentValues(double[], double[], double[], boolean)},
+ * sequentially and in parallel, and reports the speedup of each.  Also
+ * compares whole solves by {@link Xirr#xirr()} with and without
+ * {@link Xirr.Builder#withFastApproximation(boolean)}.
+ * <p>
+ * The series are generated from the seed: each has a deposit roughly every
+ * month and a final withdrawal, and the rates are spread evenly over
+ * [-50%, 100%].  Each method is timed over several rounds after warming up
+ * and the fastest round is reported.
+ * <p>
+ * Usage: <code>PresentValuesBenchmark [seed [transactions [rates [rounds]]]]</code>;
+ * each round of solves solves the series 100 times.
+ */
+public class PresentValuesBenchmark {
+
+    /**
+     * The timings of one run, in nanoseconds per rate.
+     */
+    public static class Result {
+        double loop = Double.POSITIVE_INFINITY;
+        double sequential = Double.POSITIVE_INFINITY;
+        double parallel = Double.POSITIVE_INFINITY;
+        double exactSolve = Double.POSITIVE_INFINITY;
+        double fastSolve = Double.POSITIVE_INFINITY;
+        /** Defeats dead code elimination. */
+        double checksum;
+
+        public double getSequentialSpeedup() {
+            return loop / sequential;
+        }
+
+        public double getParallelSpeedup() {
+            return loop / parallel;
+        }
+
+        public double getFastSolveSpeedup() {
+            return exactSolve / fastSolve;
+        }
+
+        @Override
+        public String toString() {
+            return '{'
+                + "loop=" + String.format("%.1f", loop) + "ns"
+                + ", sequential=" + String.format("%.1f", sequential) + "ns"
+                + ", parallel=" + String.format("%.1f", parallel) + "ns"
+                + ", sequentialSpeedup=" + String.format("%.1f", getSequentialSpeedup())
+                + ", parallelSpeedup=" + String.format("%.1f", getParallelSpeedup())
+                + ", exactSolve=" + String.format("%.0f", exactSolve) + "ns"
+                + ", fastSolve=" + String.format("%.0f", fastSolve) + "ns"
+                + ", fastSolveSpeedup=" + String.format("%.2f", getFastSolveSpeedup()) + '}';
+        }
+    }
+
+    /**
+     * Generate a series of roughly monthly deposits followed by a withdrawal.
+     * @param random the source of the amounts and dates
+     * @param size the number of transactions
+     * @return the series
+     */
+    public static Xirr series(Random random, int size) {
+        return new Xirr(transactions(random, size));
+    }
+
+    private static List<Transaction> transactions(Random random, int size) {
+        final List<Transaction> txs = new ArrayList<>(size);
+        LocalDate date = LocalDate.parse("2000-01-01");
+        double deposits = 0;
+        for (int i = 0; i < size - 1; i++) {
+            final double amount = 100 + random.nextDouble() * 900;
+            txs.add(new Transaction(-amount, date.plusDays(random.nextInt(28))));
+            deposits += amount;
+            date = date.plusMonths(1);
+        }
+        txs.add(new Transaction(1.5 * deposits, date));
+        return txs;
+    }
+
+    /**
+     * Time whole solves of the given series with and without the fast
+     * approximation, in nanoseconds per solve.
+     * @param txs the series
+     * @param solves the number of solves per round
+     * @param rounds the number of timed rounds
+     * @param result receives the fastest round of each
+     */
+    public static void solve(List<Transaction> txs, int solves, int rounds, Result result) {
+        final Xirr exact = Xirr.builder().withTransactions(txs).build();
+        final Xirr fast = Xirr.builder().withTransactions(txs).withFastApproximation(true).build();
+        for (int round = 0; round < rounds; round++) {
+            long start = System.nanoTime();
+            for (int k = 0; k < solves; k++) {
+                result.checksum += exact.xirr();
+            }
+            result.exactSolve = Math.min(result.exactSolve, (double) (System.nanoTime() - start) / solves);
+
+            start = System.nanoTime();
+            for (int k = 0; k < solves; k++) {
+                result.checksum += fast.xirr();
+            }
+            result.fastSolve = Math.min(result.fastSolve, (double) (System.nanoTime() - start) / solves);
+        }
+    }
+
+    /**
+     * Time the three methods on the given series.
+     * @param xirr the series
+     * @param count the number of rates
+     * @param rounds the number of timed rounds
+     * @return the fastest round of each method
+     */
+    public static Result run(Xirr xirr, int count, int rounds) {
+        final double[] rates = new double[count];
+        for (int j = 0; j < count; j++) {
+            rates[j] = -0.5 + 1.5 * j / Math.max(1, count - 1);
+        }
+        final double[] values = new double[count];
+        final double[] derivatives = new double[count];
+        final Result result = new Result();
+        for (int round = 0; round < rounds; round++) {
+            long start = System.nanoTime();
+            for (int j = 0; j < count; j++) {
+                values[j] = xirr.presentValue(rates[j]);
+                derivatives[j] = xirr.derivative(rates[j]);
+            }
+            result.loop = Math.min(result.loop, (double) (System.nanoTime() - start) / count);
+            result.checksum += values[count / 2] + derivatives[count / 2];
+
+            start = System.nanoTime();
+            xirr.presentValues(rates, values, derivatives, false);
+            result.sequential = Math.min(result.sequential, (double) (System.nanoTime() - start) / count);
+            result.checksum += values[count / 2] + derivatives[count / 2];
+
+            start = System.nanoTime();
+            xirr.presentValues(rates, values, derivatives, true);
+            result.parallel = Math.min(result.parallel, (double) (System.nanoTime() - start) / count);
+            result.checksum += values[count / 2] + derivatives[count / 2];
+        }
+        return result;
+    }
+
+    public static void main(String[] args) {
+        final long seed = args.length > 0 ? Long.parseLong(args[0]) : 1;
+        final int size = args.length > 1 ? Integer.parseInt(args[1]) : 201;
+        final int count = args.length > 2 ? Integer.parseInt(args[2]) : 500;
+        final int rounds = args.length > 3 ? Integer.parseInt(args[3]) : 200;
+        final List<Transaction> txs = transactions(new Random(seed), size);
+        // Warm up, so that each method is compiled before it is timed
+        final List<Transaction> warmUp = transactions(new Random(seed + 1), size);
+        run(new Xirr(warmUp), count, rounds);
+        solve(warmUp, 100, rounds, new Result());
+        final Result result = run(new Xirr(txs), count, rounds);
+        solve(txs, 100, rounds, result);
+        System.out.printf("transactions=%d rates=%d processors=%d%n",
+            size, count, Runtime.getRuntime().availableProcessors());
+        System.out.println(result);
+    }
+}
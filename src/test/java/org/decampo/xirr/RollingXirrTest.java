@@ -0,0 +1,98 @@
+package org.decampo.xirr;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.Period;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.stream.Collectors;
+import org.junit.Test;
+
+import static org.decampo.xirr.NewtonRaphson.TOLERANCE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RollingXirrTest {
+
+    @Test
+    public void xirrs_match_sliced_xirr() {
+        final List<Transaction> txs = new ArrayList<>();
+        LocalDate date = LocalDate.parse("2010-01-15");
+        for (int month = 0; month < 60; month++) {
+            txs.add(new Transaction(-1000, date));
+            if (month % 3 == 2) {
+                txs.add(new Transaction(2900 + 10 * month, date.plusDays(10)));
+            }
+            date = date.plusMonths(1);
+        }
+
+        final SortedMap<LocalDate, Double> rates = RollingXirr.builder()
+            .withWindow(Period.ofYears(1))
+            .withTransactions(txs)
+            .xirrs();
+
+        assertEquals(txs.stream().map(Transaction::getWhen).distinct().count(),
+            rates.size());
+        for (Map.Entry<LocalDate, Double> entry : rates.entrySet()) {
+            final LocalDate end = entry.getKey();
+            final LocalDate start = end.minus(Period.ofYears(1));
+            final List<Transaction> slice = txs.stream()
+                .filter(tx -> !tx.getWhen().isBefore(start)
+                    && !tx.getWhen().isAfter(end))
+                .collect(Collectors.toList());
+            final double actual = entry.getValue();
+            try {
+                final Xirr xirr = new Xirr(slice);
+                try {
+                    assertEquals(end.toString(), xirr.xirr(), actual, TOLERANCE);
+                } catch (ArithmeticException e) {
+                    // The warm start may succeed where the default guess
+                    // fails, in which case it must still be a root
+                    assertTrue(end.toString(), Double.isNaN(actual)
+                        || Math.abs(xirr.presentValue(actual)) < TOLERANCE);
+                }
+            } catch (IllegalArgumentException e) {
+                assertTrue(end.toString(), Double.isNaN(actual));
+            }
+        }
+    }
+
+    @Test
+    public void xirrs_invalid_windows_are_nan() {
+        final SortedMap<LocalDate, Double> rates = RollingXirr.builder()
+            .withWindow(Period.ofYears(1))
+            .withTransactions(
+                new Transaction(-1000, "2010-01-01"),
+                new Transaction( 1100, "2011-01-01"),
+                new Transaction(-1000, "2013-01-01"),
+                new Transaction(    0, "2014-01-01"))
+            .xirrs();
+        assertTrue(rates.get(LocalDate.parse("2010-01-01")).isNaN());
+        assertEquals(0.10, rates.get(LocalDate.parse("2011-01-01")), TOLERANCE);
+        assertTrue(rates.get(LocalDate.parse("2013-01-01")).isNaN());
+        assertEquals(-1, rates.get(LocalDate.parse("2014-01-01")), TOLERANCE);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void build_requires_window() {
+        RollingXirr.builder()
+            .withTransactions(
+                new Transaction(-1000, "2010-01-01"),
+                new Transaction( 1100, "2011-01-01"))
+            .build();
+        fail("Expected exception for missing window");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void intraday_rejected() {
+        RollingXirr.builder()
+            .withWindow(Period.ofYears(1))
+            .withTransactions(
+                new Transaction(-1000, Instant.parse("2010-01-01T00:00:00Z")),
+                new Transaction( 1100, Instant.parse("2011-01-01T12:00:00Z")))
+            .build();
+    }
+}
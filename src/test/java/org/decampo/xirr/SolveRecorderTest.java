@@ -0,0 +1,230 @@
+package org.decampo.xirr;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.decampo.xirr.NewtonRaphson.TOLERANCE;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SolveRecorderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static List<Transaction> transactions() {
+        return Arrays.asList(
+            new Transaction(-1000, "2016-01-15"),
+            new Transaction(-2500, "2016-02-08"),
+            new Transaction(-1000, "2016-04-17"),
+            new Transaction(5050, "2016-08-24"));
+    }
+
+    @Test
+    public void records_solves_over_the_threshold() {
+        final List<SolveRecord> records = new ArrayList<>();
+        final SolveRecorder recorder = SolveRecorder.builder()
+            .withIterationThreshold(0)
+            .withSink(records::add)
+            .build();
+        final double rate = Xirr.builder()
+            .withTransactions(transactions())
+            .withRecorder(recorder)
+            .xirr();
+        assertEquals(1, records.size());
+        assertEquals(1, recorder.getRecorded());
+        final SolveRecord record = records.get(0);
+        assertEquals(SolveRecord.CONVERGED, record.getOutcome());
+        assertEquals(rate, record.getRate(), 0);
+        assertEquals("ACT/365.0", record.getConvention());
+        assertTrue(record.getIterations() > 0);
+        final double[] candidates = record.getCandidates();
+        assertEquals(record.getGuess(), candidates[0], 0);
+        assertEquals(rate, candidates[candidates.length - 1], TOLERANCE);
+        assertEquals(transactions().size(), record.getTransactions().size());
+        assertEquals(LocalDate.parse("2016-01-15"), record.getTransactions().get(0).getWhen());
+    }
+
+    @Test
+    public void skips_solves_under_the_threshold() {
+        final List<SolveRecord> records = new ArrayList<>();
+        final SolveRecorder recorder = SolveRecorder.builder()
+            .withSink(records::add)
+            .build();
+        Xirr.builder().withTransactions(transactions()).withRecorder(recorder).xirr();
+        assertTrue(records.isEmpty());
+    }
+
+    @Test
+    public void records_failures() {
+        final List<SolveRecord> records = new ArrayList<>();
+        final SolveRecorder recorder = SolveRecorder.builder()
+            .withSink(records::add)
+            .build();
+        try {
+            Xirr.builder()
+                .withTransactions(transactions())
+                .withNewtonRaphsonBuilder(NewtonRaphson.builder().withIterations(1))
+                .withRecorder(recorder)
+                .xirr();
+            fail("Expected non-convergence");
+        } catch (NonconvergenceException expected) {
+            // Expected
+        }
+        assertEquals(1, records.size());
+        assertEquals("NonconvergenceException", records.get(0).getOutcome());
+        assertTrue(Double.isNaN(records.get(0).getRate()));
+    }
+
+    @Test
+    public void log_round_trip_and_rotation() throws IOException {
+        final Path directory = folder.getRoot().toPath().resolve("solves");
+        final SolveRecorder recorder = SolveRecorder.builder()
+            .withIterationThreshold(0)
+            .withDirectory(directory)
+            .withMaxFileSize(1024)
+            .withMaxFiles(2)
+            .build();
+        final Xirr.Builder builder = Xirr.builder()
+            .withTransactions(transactions())
+            .withRecorder(recorder);
+        final double rate = builder.xirr();
+        final List<SolveRecord> first = SolveRecorder.read(directory.resolve(SolveRecorder.FILE_NAME));
+        assertEquals(1, first.size());
+        assertEquals(rate, first.get(0).getRate(), 0);
+        for (int i = 0; i < 20; i++) {
+            builder.xirr();
+        }
+        assertEquals(21, recorder.getRecorded());
+        assertEquals(0, recorder.getDropped());
+        assertTrue(Files.exists(directory.resolve(SolveRecorder.FILE_NAME + ".1")));
+        assertTrue(Files.exists(directory.resolve(SolveRecorder.FILE_NAME + ".2")));
+        assertFalse(Files.exists(directory.resolve(SolveRecorder.FILE_NAME + ".3")));
+        final SolveRecord last = SolveRecorder.read(directory.resolve(SolveRecorder.FILE_NAME + ".1")).get(0);
+        assertArrayEquals(first.get(0).getCandidates(), last.getCandidates(), 0);
+    }
+
+    @Test
+    public void truncated_record_is_dropped_on_open() throws IOException {
+        final Path directory = folder.getRoot().toPath();
+        final Path file = directory.resolve(SolveRecorder.FILE_NAME);
+        final SolveRecorder.Builder builder = SolveRecorder.builder()
+            .withIterationThreshold(0)
+            .withDirectory(directory);
+        final Xirr.Builder xirr = Xirr.builder().withTransactions(transactions());
+        xirr.withRecorder(builder.build()).xirr();
+        xirr.xirr();
+        final long complete = Files.size(file);
+        xirr.xirr();
+        // Simulate a crash in the middle of writing the third record
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(complete + 20);
+        }
+        assertEquals(2, SolveRecorder.read(file).size());
+
+        // A new recorder appends after the last complete record
+        xirr.withRecorder(builder.build()).xirr();
+        final List<SolveRecord> records = SolveRecorder.read(file);
+        assertEquals(3, records.size());
+        for (SolveRecord record : records) {
+            assertEquals(transactions().size(), record.getTransactions().size());
+            assertEquals(SolveRecord.CONVERGED, record.getOutcome());
+        }
+        assertEquals(complete + (complete - 8) / 2, Files.size(file));
+    }
+
+    @Test
+    public void replay() {
+        final List<SolveRecord> records = new ArrayList<>();
+        final SolveRecorder recorder = SolveRecorder.builder()
+            .withIterationThreshold(0)
+            .withSink(records::add)
+            .build();
+        Xirr.builder()
+            .withTransactions(transactions())
+            .withDayCountConvention(DayCountConvention.ACT_ACT)
+            .withRecorder(recorder)
+            .xirr();
+        final SolveRecord record = records.get(0);
+        final SolveReplay.Result same = SolveReplay.replay(record, b -> b);
+        assertEquals(SolveRecord.CONVERGED, same.getOutcome());
+        assertEquals(record.getRate(), same.getRate(), 0);
+        assertEquals(record.getIterations(), same.getIterations());
+        final SolveReplay.Result logSpace = SolveReplay.replay(record, b -> b.withLogSpaceEvaluation(true));
+        assertEquals(record.getRate(), logSpace.getRate(), TOLERANCE);
+    }
+
+    private static SolveRecord record(DayCountConvention convention) {
+        final List<SolveRecord> records = new ArrayList<>();
+        final SolveRecorder recorder = SolveRecorder.builder()
+            .withIterationThreshold(0)
+            .withSink(records::add)
+            .build();
+        Xirr.builder()
+            .withTransactions(transactions())
+            .withDayCountConvention(convention)
+            .withRecorder(recorder)
+            .xirr();
+        return records.get(0);
+    }
+
+    @Test
+    public void replay_builtin_conventions() {
+        for (DayCountConvention convention : Arrays.asList(
+            DayCountConvention.ACT_365,
+            DayCountConvention.ACT_360,
+            DayCountConvention.ACT_ACT,
+            DayCountConvention.THIRTY_360,
+            DayCountConvention.actual(365.25))) {
+            final SolveRecord record = record(convention);
+            assertTrue(record.getConvention(), SolveReplay.isReplayable(record));
+            final SolveReplay.Result result = SolveReplay.replay(record, b -> b);
+            assertEquals(record.getConvention(), SolveRecord.CONVERGED, result.getOutcome());
+            assertEquals(record.getConvention(), record.getRate(), result.getRate(), 0);
+        }
+    }
+
+    @Test
+    public void convention_aliases() {
+        assertTrue(SolveReplay.convention("ACT/ACT ISDA") == DayCountConvention.ACT_ACT);
+        assertTrue(SolveReplay.convention("30/360 US") == DayCountConvention.THIRTY_360);
+        assertTrue(SolveReplay.convention("ACT/365 Fixed") == DayCountConvention.ACT_365);
+    }
+
+    @Test
+    public void replay_custom_convention() {
+        final DayCountConvention custom = new DayCountConvention() {
+            @Override
+            public double yearFraction(long startEpochDay, long endEpochDay) {
+                return (endEpochDay - startEpochDay) / 364.0;
+            }
+
+            @Override
+            public String toString() {
+                return "ACT/ACT";
+            }
+        };
+        final SolveRecord record = record(custom);
+        assertEquals("custom:ACT/ACT", record.getConvention());
+        assertFalse(SolveReplay.isReplayable(record));
+        try {
+            SolveReplay.replay(record, b -> b);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+            // Expected
+        }
+    }
+}
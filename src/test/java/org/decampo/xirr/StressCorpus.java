@@ -0,0 +1,130 @@
+package org.decampo.xirr;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Seeded generator of realistic and adversarial series of transactions, for
+ * measuring the convergence and performance of the solvers against a fixed
+ * corpus.  The same seed and size always yield the same corpus.
+ * @see StressRunner
+ */
+public class StressCorpus {
+
+    /**
+     * The kinds of series in the corpus.
+     */
+    public enum Category {
+        /** Monthly deposits over a few years, some withdrawals and a
+         * terminal value between half and three times the deposits. */
+        REALISTIC,
+        /** Quarterly deposits over 30 to 80 years with growth of up to 100
+         * times. */
+        LONG_HORIZON,
+        /** Amounts of alternating sign, which may have several roots. */
+        SIGN_CHANGES,
+        /** A terminal value of a millionth to a thousandth of the deposits. */
+        NEAR_TOTAL_LOSS,
+        /** Amounts around 1e12 to 1e15 growing up to a thousand times over a
+         * short horizon. */
+        HUGE_MAGNITUDES
+    }
+
+    private static final LocalDate EPOCH = LocalDate.parse("1990-01-01");
+
+    private final long seed;
+    private final int perCategory;
+
+    /**
+     * Construct a corpus.
+     * @param seed the seed of the random number generator
+     * @param perCategory the number of series in each category
+     */
+    public StressCorpus(long seed, int perCategory) {
+        this.seed = seed;
+        this.perCategory = perCategory;
+    }
+
+    /**
+     * Generate the series of the given category.
+     * @param category the category
+     * @return the series of transactions
+     */
+    public List<List<Transaction>> generate(Category category) {
+        // A generator per category, so that each category is stable even if
+        // the others change
+        final Random random = new Random(seed * 31 + category.ordinal());
+        final List<List<Transaction>> corpus = new ArrayList<>(perCategory);
+        for (int k = 0; k < perCategory; k++) {
+            corpus.add(series(category, random));
+        }
+        return corpus;
+    }
+
+    private static List<Transaction> series(Category category, Random random) {
+        final LocalDate start = EPOCH.plusDays(random.nextInt(30 * 365));
+        switch (category) {
+            case REALISTIC:
+                return periodic(random, start, 1, 12 + random.nextInt(108),
+                    100 + random.nextDouble() * 9_900, 0.1, 0.5 + random.nextDouble() * 2.5);
+            case LONG_HORIZON:
+                return periodic(random, start, 3, 120 + random.nextInt(200),
+                    100 + random.nextDouble() * 9_900, 0, 1 + random.nextDouble() * 99);
+            case SIGN_CHANGES:
+                return alternating(random, start);
+            case NEAR_TOTAL_LOSS:
+                return periodic(random, start, 1, 2 + random.nextInt(60),
+                    100 + random.nextDouble() * 9_900, 0, Math.pow(10, -3 - 3 * random.nextDouble()));
+            case HUGE_MAGNITUDES:
+                return periodic(random, start, 1, 2 + random.nextInt(24),
+                    Math.pow(10, 12 + 3 * random.nextDouble()), 0, 1 + random.nextDouble() * 999);
+            default:
+                throw new IllegalArgumentException("Unknown category: " + category);
+        }
+    }
+
+    /**
+     * Deposits every few months, occasional withdrawals and a terminal value
+     * of the given multiple of the deposits.
+     */
+    private static List<Transaction> periodic(
+        Random random,
+        LocalDate start,
+        int months,
+        int periods,
+        double deposit,
+        double withdrawalChance,
+        double multiple) {
+        final List<Transaction> txs = new ArrayList<>(periods + 1);
+        double deposits = 0;
+        LocalDate date = start;
+        for (int i = 0; i < periods; i++) {
+            final double amount = deposit * (0.5 + random.nextDouble());
+            if (i > 0 && random.nextDouble() < withdrawalChance) {
+                txs.add(new Transaction(amount / 2, date.plusDays(random.nextInt(28))));
+            } else {
+                txs.add(new Transaction(-amount, date.plusDays(random.nextInt(28))));
+                deposits += amount;
+            }
+            date = date.plusMonths(months);
+        }
+        txs.add(new Transaction(deposits * multiple, date));
+        Collections.shuffle(txs, random);
+        return txs;
+    }
+
+    private static List<Transaction> alternating(Random random, LocalDate start) {
+        final int count = 5 + random.nextInt(16);
+        final List<Transaction> txs = new ArrayList<>(count);
+        LocalDate date = start;
+        for (int i = 0; i < count; i++) {
+            final double magnitude = 100 + random.nextDouble() * 9_900;
+            txs.add(new Transaction(i % 2 == 0 ? -magnitude : magnitude, date));
+            date = date.plusDays(30 + random.nextInt(700));
+        }
+        return txs;
+    }
+}
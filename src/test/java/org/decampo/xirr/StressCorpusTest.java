@@ -0,0 +1,50 @@
+package org.decampo.xirr;
+
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class StressCorpusTest {
+
+    @Test
+    public void generate_is_deterministic() {
+        for (StressCorpus.Category category : StressCorpus.Category.values()) {
+            final List<List<Transaction>> first = new StressCorpus(7, 20).generate(category);
+            final List<List<Transaction>> second = new StressCorpus(7, 20).generate(category);
+            assertEquals(20, first.size());
+            for (int k = 0; k < first.size(); k++) {
+                assertEquals(first.get(k).size(), second.get(k).size());
+                for (int i = 0; i < first.get(k).size(); i++) {
+                    final Transaction a = first.get(k).get(i);
+                    final Transaction b = second.get(k).get(i);
+                    assertEquals(a.getAmount(), b.getAmount(), 0);
+                    assertEquals(a.getWhen(), b.getWhen());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void run_reports_every_solve() {
+        final Map<String, Map<StressCorpus.Category, StressRunner.Statistics>> report =
+            StressRunner.run(new StressCorpus(7, 20), StressRunner.configurations());
+        assertEquals(StressRunner.configurations().size(), report.size());
+        for (Map<StressCorpus.Category, StressRunner.Statistics> byCategory : report.values()) {
+            assertEquals(StressCorpus.Category.values().length, byCategory.size());
+            for (StressRunner.Statistics statistics : byCategory.values()) {
+                final long failures = statistics.getFailures().values().stream()
+                    .mapToLong(Long::longValue).sum();
+                assertEquals(20, statistics.getSolves());
+                assertEquals(20, statistics.getConverged() + failures);
+            }
+        }
+        // The realistic series should all be solved with the defaults
+        final StressRunner.Statistics realistic =
+            report.get("default").get(StressCorpus.Category.REALISTIC);
+        assertEquals(20, realistic.getConverged());
+        assertTrue(realistic.getMeanIterations() > 1);
+    }
+}
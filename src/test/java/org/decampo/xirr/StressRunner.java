@@ -0,0 +1,170 @@
+package org.decampo.xirr;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.UnaryOperator;
+
+/**
+ * Solves a {@link StressCorpus} with a number of solver configurations and
+ * reports, for each configuration and category, the iterations per solve,
+ * the failures by type and the throughput.
+ * <p>
+ * Each configuration solves through the production code path of
+ * {@link Xirr#xirr()}, with a {@link SolveRecorder} recording every solve.
+ * Iterations are counted as the evaluations of the present value in the
+ * recorded trace; the approximate phase of
+ * {@link Xirr.Builder#withFastApproximation(boolean)} is not counted.  The
+ * throughput includes the recorder's copy of each series.
+ * <p>
+ * Usage: <code>StressRunner [seed [seriesPerCategory]]</code>
+ */
+public class StressRunner {
+
+    /**
+     * A named solver configuration, applied to a builder which already has
+     * the transactions and a recorder.
+     */
+    public static class Configuration {
+        final String name;
+        final UnaryOperator<Xirr.Builder> configure;
+
+        public Configuration(String name, UnaryOperator<Xirr.Builder> configure) {
+            this.name = name;
+            this.configure = configure;
+        }
+    }
+
+    /**
+     * The default configurations: the defaults, log space evaluation, the
+     * fast approximation, a tight absolute tolerance and a tolerance relative
+     * to the deposits with a step tolerance.
+     * @return the default configurations
+     */
+    public static List<Configuration> configurations() {
+        final NewtonRaphson.Builder tight = NewtonRaphson.builder().withTolerance(1e-10);
+        return Arrays.asList(
+            new Configuration("default", b -> b),
+            new Configuration("log-space", b -> b.withLogSpaceEvaluation(true)),
+            new Configuration("fast", b -> b.withFastApproximation(true)),
+            new Configuration("tolerance-1e-10", b -> b.withNewtonRaphsonBuilder(tight)),
+            new Configuration("relative-1e-12",
+                b -> b.withRelativeTolerance(1e-12).withStepTolerance(1e-14)));
+    }
+
+    /**
+     * The statistics of one configuration on one category.
+     */
+    public static class Statistics {
+        long solves;
+        long converged;
+        long evaluations;
+        long maxEvaluations;
+        long nanos;
+        final Map<String, Long> failures = new TreeMap<>();
+
+        public long getSolves() {
+            return solves;
+        }
+
+        public long getConverged() {
+            return converged;
+        }
+
+        public Map<String, Long> getFailures() {
+            return failures;
+        }
+
+        public double getMeanIterations() {
+            return solves > 0 ? (double) evaluations / solves : Double.NaN;
+        }
+
+        public long getMaxIterations() {
+            return maxEvaluations;
+        }
+
+        public double getSolvesPerSecond() {
+            return nanos > 0 ? solves * 1e9 / nanos : Double.NaN;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("solves=%d converged=%d iterations(mean=%.2f, max=%d) "
+                    + "throughput=%.0f/s failures=%s",
+                solves, converged, getMeanIterations(), maxEvaluations,
+                getSolvesPerSecond(), failures);
+        }
+    }
+
+    /**
+     * Solve the corpus with each configuration.
+     * @param corpus the corpus
+     * @param configurations the configurations
+     * @return the statistics by configuration name and category
+     */
+    public static Map<String, Map<StressCorpus.Category, Statistics>> run(
+        StressCorpus corpus,
+        List<Configuration> configurations) {
+        final Map<StressCorpus.Category, List<List<Transaction>>> series =
+            new EnumMap<>(StressCorpus.Category.class);
+        for (StressCorpus.Category category : StressCorpus.Category.values()) {
+            series.put(category, corpus.generate(category));
+        }
+        final Map<String, Map<StressCorpus.Category, Statistics>> report = new TreeMap<>();
+        for (Configuration configuration : configurations) {
+            final Map<StressCorpus.Category, Statistics> byCategory =
+                new EnumMap<>(StressCorpus.Category.class);
+            for (Map.Entry<StressCorpus.Category, List<List<Transaction>>> entry : series.entrySet()) {
+                byCategory.put(entry.getKey(), run(entry.getValue(), configuration));
+            }
+            report.put(configuration.name, byCategory);
+        }
+        return report;
+    }
+
+    private static Statistics run(List<List<Transaction>> series, Configuration configuration) {
+        final Statistics statistics = new Statistics();
+        final SolveRecorder recorder = SolveRecorder.builder()
+            .withIterationThreshold(0)
+            .withSink(record -> {
+                statistics.evaluations += record.getIterations();
+                statistics.maxEvaluations = Math.max(statistics.maxEvaluations, record.getIterations());
+            })
+            .build();
+        final long start = System.nanoTime();
+        for (List<Transaction> txs : series) {
+            statistics.solves++;
+            try {
+                configuration.configure.apply(Xirr.builder()
+                        .withTransactions(txs)
+                        .withRecorder(recorder))
+                    .xirr();
+                statistics.converged++;
+            } catch (ArithmeticException | IllegalArgumentException e) {
+                statistics.failures.merge(e.getClass().getSimpleName(), 1L, Long::sum);
+            }
+        }
+        statistics.nanos = System.nanoTime() - start;
+        return statistics;
+    }
+
+    public static void main(String[] args) {
+        final long seed = args.length > 0 ? Long.parseLong(args[0]) : 1;
+        final int perCategory = args.length > 1 ? Integer.parseInt(args[1]) : 1_000;
+        final StressCorpus corpus = new StressCorpus(seed, perCategory);
+        final List<Configuration> configurations = new ArrayList<>(configurations());
+        // Warm up, so that the first configuration is not penalized
+        run(new StressCorpus(seed + 1, Math.min(perCategory, 100)), configurations);
+        final Map<String, Map<StressCorpus.Category, Statistics>> report =
+            run(corpus, configurations);
+        for (Map.Entry<String, Map<StressCorpus.Category, Statistics>> entry : report.entrySet()) {
+            System.out.println(entry.getKey());
+            for (Map.Entry<StressCorpus.Category, Statistics> statistics : entry.getValue().entrySet()) {
+                System.out.printf("  %-16s %s%n", statistics.getKey(), statistics.getValue());
+            }
+        }
+    }
+}
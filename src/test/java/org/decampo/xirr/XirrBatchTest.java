@@ -0,0 +1,84 @@
+package org.decampo.xirr;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import org.junit.Test;
+
+import static org.decampo.xirr.NewtonRaphson.TOLERANCE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class XirrBatchTest {
+
+    private static List<Transaction> series(double scale, String... dates) {
+        return Arrays.asList(
+            new Transaction(-1000 * scale, dates[0]),
+            new Transaction(-2500 * scale, dates[1]),
+            new Transaction( 3700 * scale, dates[2]));
+    }
+
+    @Test
+    public void proportional_series_share_a_solve() {
+        final List<Collection<Transaction>> batch = Arrays.asList(
+            series(1, "2010-01-01", "2010-06-15", "2012-03-31"),
+            series(3, "2010-01-01", "2010-06-15", "2012-03-31"),
+            // Same offsets between the dates, shifted
+            series(0.5, "2011-01-01", "2011-06-15", "2013-03-31"),
+            series(1, "2010-01-01", "2010-06-16", "2012-03-31"),
+            Arrays.asList(new Transaction(1, "2010-01-01"), new Transaction(1, "2011-01-01")));
+
+        final XirrBatch.Result result = XirrBatch.builder().xirrs(batch);
+
+        assertEquals(5, result.getSeries());
+        assertEquals(2, result.getShapes());
+        assertEquals(2, result.getDuplicates());
+        assertEquals(1, result.getInvalid());
+        final double[] rates = result.getRates();
+        for (int i = 0; i < 4; i++) {
+            assertEquals(new Xirr(batch.get(i)).xirr(), rates[i], TOLERANCE);
+        }
+        assertTrue(Double.isNaN(rates[4]));
+    }
+
+    @Test
+    public void shifted_series_distinct_for_calendar_conventions() {
+        final List<Collection<Transaction>> batch = Arrays.asList(
+            series(1, "2011-03-01", "2011-06-15", "2011-12-31"),
+            series(1, "2012-03-01", "2012-06-15", "2012-12-31"));
+
+        final XirrBatch.Result result = XirrBatch.builder()
+            .withDayCountConvention(DayCountConvention.ACT_ACT)
+            .xirrs(batch);
+
+        assertEquals(2, result.getShapes());
+        assertEquals(0, result.getDuplicates());
+
+        // The same series share a solve with actual days
+        assertEquals(1, XirrBatch.builder().xirrs(batch).getShapes());
+    }
+
+    @Test
+    public void intraday_series_keep_the_time_of_day() {
+        final List<Transaction> intraday = Arrays.asList(
+            new Transaction(-1000, Instant.parse("2020-01-01T00:00:00Z")),
+            new Transaction( 1100, Instant.parse("2020-01-02T23:00:00Z")));
+        final List<Collection<Transaction>> batch = Arrays.asList(
+            intraday,
+            intraday,
+            series(1, "2010-01-01", "2010-06-15", "2012-03-31"));
+        final XirrBatch.Result result = XirrBatch.builder().xirrs(batch);
+        final double[] rates = result.getRates();
+        final double expected = new Xirr(intraday).xirr();
+        assertEquals(expected, rates[0], Math.abs(expected) * 1e-12);
+        assertEquals(expected, rates[1], Math.abs(expected) * 1e-12);
+        assertEquals(3, result.getShapes());
+        assertEquals(0, result.getDuplicates());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void quantum_not_positive() {
+        XirrBatch.builder().withQuantum(0);
+    }
+}
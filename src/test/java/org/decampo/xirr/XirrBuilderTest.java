@@ -5,14 +5,19 @@
  */
 package org.decampo.xirr;
 
+import java.time.LocalDate;
 import java.util.Arrays;
 import org.junit.Test;
 
 import static org.decampo.xirr.NewtonRaphson.TOLERANCE;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class XirrBuilderTest {
@@ -67,8 +72,9 @@ public class XirrBuilderTest {
     public void withNewtonRaphsonBuilder() throws Exception {
         final double expected = 1;
 
-        final NewtonRaphson.Builder builder = setUpNewtonRaphsonBuilder();
-        when(builder.findRoot(anyDouble())).thenReturn(expected);
+        final NewtonRaphson newtonRaphson = mock(NewtonRaphson.class);
+        when(newtonRaphson.findRoot(any(), anyDouble())).thenReturn(expected);
+        final NewtonRaphson.Builder builder = setUpNewtonRaphsonBuilder(newtonRaphson);
 
         final double xirr = Xirr.builder()
             .withNewtonRaphsonBuilder(builder)
@@ -87,8 +93,9 @@ public class XirrBuilderTest {
         final double expected = 1;
         final double guess = 3;
 
-        final NewtonRaphson.Builder builder = setUpNewtonRaphsonBuilder();
-        when(builder.findRoot(guess)).thenReturn(expected);
+        final NewtonRaphson newtonRaphson = mock(NewtonRaphson.class);
+        when(newtonRaphson.findRoot(any(), eq(guess))).thenReturn(expected);
+        final NewtonRaphson.Builder builder = setUpNewtonRaphsonBuilder(newtonRaphson);
 
         final double xirr = Xirr.builder()
             .withGuess(guess)
@@ -103,11 +110,297 @@ public class XirrBuilderTest {
         assertEquals(expected, xirr, 0);
     }
 
-    private NewtonRaphson.Builder setUpNewtonRaphsonBuilder()
+    @Test
+    public void withRelativeTolerance() {
+        // The same series scaled to billions converges to the same rate
+        final double xirr = Xirr.builder()
+            .withRelativeTolerance(1e-12)
+            .withStepTolerance(1e-12)
+            .withTransactions(
+                new Transaction(-1e12, "2010-01-01"),
+                new Transaction(-1e12, "2010-04-01"),
+                new Transaction(-1e12, "2010-07-01"),
+                new Transaction(-1e12, "2010-10-01"),
+                new Transaction(4.3e12, "2011-01-01")
+            ).xirr();
+        assertEquals(0.1212676, xirr, TOLERANCE);
+    }
+
+    @Test
+    public void withRelativeTolerance_scaledByDeposits() {
+        final NewtonRaphson newtonRaphson = mock(NewtonRaphson.class);
+        when(newtonRaphson.findRoot(any(), anyDouble())).thenReturn(0.0);
+        final NewtonRaphson.Builder builder = setUpNewtonRaphsonBuilder(newtonRaphson);
+
+        Xirr.builder()
+            .withNewtonRaphsonBuilder(builder)
+            .withRelativeTolerance(1e-9)
+            .withStepTolerance(1e-8)
+            .withTransactions(
+                new Transaction(-1000, "2010-01-01"),
+                new Transaction(-500, "2010-06-01"),
+                new Transaction( 1500, "2011-01-01")
+            ).xirr();
+
+        verify(builder).withRelativeTolerance(1e-9);
+        verify(builder).withScale(1500);
+        verify(builder).withStepTolerance(1e-8);
+    }
+
+    @Test
+    public void withNewtonRaphsonBuilder_shared() {
+        final Transaction[] txs = {
+            new Transaction(-1000, "2010-01-01"),
+            new Transaction(-500, "2010-06-01"),
+            new Transaction( 1600, "2011-01-01")
+        };
+        final NewtonRaphson.Builder shared = NewtonRaphson.builder();
+        final double tolerant = Xirr.builder()
+            .withNewtonRaphsonBuilder(shared)
+            .withRelativeTolerance(1e-2)
+            .withStepTolerance(1e-1)
+            .withTransactions(txs)
+            .xirr();
+        final double expected = Xirr.builder().withTransactions(txs).xirr();
+        assertTrue(Math.abs(expected - tolerant) > TOLERANCE);
+
+        // The criteria of the first instance must not leak into the second
+        final double xirr = Xirr.builder()
+            .withNewtonRaphsonBuilder(shared)
+            .withTransactions(txs)
+            .xirr();
+        assertEquals(expected, xirr, 0);
+    }
+
+    @Test
+    public void withLogSpaceEvaluation() {
+        final Transaction[] txs = {
+            new Transaction(-1000, "2010-01-01"),
+            new Transaction(-1000, "2010-04-01"),
+            new Transaction(-1000, "2010-07-01"),
+            new Transaction(-1000, "2010-10-01"),
+            new Transaction( 4300, "2011-01-01")
+        };
+        final Xirr xirr = Xirr.builder()
+            .withLogSpaceEvaluation(true)
+            .withTransactions(txs)
+            .build();
+        assertEquals(0.1212676, xirr.xirr(), TOLERANCE);
+
+        final Xirr plain = new Xirr(txs);
+        for (double rate = -3; rate < 3; rate += 0.1) {
+            final double value = plain.presentValue(rate);
+            final double derivative = plain.derivative(rate);
+            assertEquals(value, xirr.presentValue(rate),
+                1e-12 * Math.max(1, Math.abs(value)));
+            assertEquals(derivative, xirr.derivative(rate),
+                1e-12 * Math.max(1, Math.abs(derivative)));
+        }
+    }
+
+    @Test
+    public void withLogSpaceEvaluation_long_dated() {
+        final Transaction[] txs = {
+            new Transaction(-1000, "1800-01-01"),
+            new Transaction( 1e30, "2000-01-01")
+        };
+        try {
+            new Xirr(txs).xirr();
+            fail("Expected overflow");
+        } catch (OverflowException e) {
+            // Expected
+        }
+        final double years = (LocalDate.parse("2000-01-01").toEpochDay()
+            - LocalDate.parse("1800-01-01").toEpochDay()) / 365.0;
+        final double xirr = Xirr.builder()
+            .withLogSpaceEvaluation(true)
+            .withTransactions(txs)
+            .xirr();
+        assertEquals(Math.pow(1e27, 1 / years) - 1, xirr, TOLERANCE);
+    }
+
+    @Test
+    public void withFastApproximation() {
+        final double xirr = Xirr.builder()
+            .withFastApproximation(true)
+            .withTransactions(
+                new Transaction(-10000, "2000-05-24"),
+                new Transaction(3027.25, "2000-06-05"),
+                new Transaction(630.68, "2001-04-09"),
+                new Transaction(2018.2, "2004-02-24"),
+                new Transaction(1513.62, "2005-03-18"),
+                new Transaction(1765.89, "2006-02-15"),
+                new Transaction(4036.33, "2007-01-10"),
+                new Transaction(4036.33, "2007-11-14"),
+                new Transaction(1513.62, "2008-12-17"),
+                new Transaction(1513.62, "2010-01-15"),
+                new Transaction(2018.16, "2011-01-14"),
+                new Transaction(1513.62, "2012-02-03"),
+                new Transaction(1009.08, "2013-01-18"),
+                new Transaction(1513.62, "2014-01-24"),
+                new Transaction(1513.62, "2015-01-30"),
+                new Transaction(1765.89, "2016-01-22"),
+                new Transaction(1765.89, "2017-01-20"),
+                new Transaction(22421.55, "2017-06-05")
+            ).xirr();
+        assertEquals(0.2126861, xirr, TOLERANCE);
+    }
+
+    @Test
+    public void withFastApproximation_refines_to_tolerance() {
+        final double tolerance = TOLERANCE / 1000;
+        final Xirr xirr = Xirr.builder()
+            .withFastApproximation(true)
+            .withNewtonRaphsonBuilder(
+                NewtonRaphson.builder().withTolerance(tolerance))
+            .withTransactions(
+                new Transaction(-2610, "2001-06-22"),
+                new Transaction(-2589, "2001-07-03"),
+                new Transaction(-5110, "2001-07-05"),
+                new Transaction(-2550, "2001-07-06"),
+                new Transaction(-5086, "2001-07-09"),
+                new Transaction(-2561, "2001-07-10"),
+                new Transaction(-5040, "2001-07-12"),
+                new Transaction(-2552, "2001-07-13"),
+                new Transaction(-2530, "2001-07-16"),
+                new Transaction(29520, "2001-07-17")
+            ).build();
+        final double rate = xirr.xirr();
+        assertEquals(-0.7640294, rate, TOLERANCE);
+        assertEquals(0, xirr.presentValue(rate), tolerance);
+    }
+
+    @Test
+    public void withRootFinder() {
+        final Xirr.Builder builder = Xirr.builder()
+            .withTransactions(
+                new Transaction(-1000, "2010-01-01"),
+                new Transaction(-2500, "2010-06-15"),
+                new Transaction( 3700, "2012-03-31"));
+        final double expected = builder.xirr();
+
+        // NewtonRaphson as a root finder
+        final double newton = builder
+            .withRootFinder(NewtonRaphson.builder().build())
+            .xirr();
+        assertEquals(expected, newton, TOLERANCE);
+
+        // Bisection, using only the values of the evaluator
+        final double bisection = builder
+            .withRootFinder((evaluator, guess) -> {
+                double lo = -0.99;
+                double hi = 10;
+                final double sign = Math.signum(evaluator.value(lo));
+                while (hi - lo > 1e-12) {
+                    final double mid = (lo + hi) / 2;
+                    if (Math.signum(evaluator.value(mid)) == sign) {
+                        lo = mid;
+                    } else {
+                        hi = mid;
+                    }
+                }
+                return lo;
+            })
+            .xirr();
+        assertEquals(expected, bisection, TOLERANCE);
+    }
+
+    @Test
+    public void withRootFinder_mock() {
+        final RootFinder rootFinder = mock(RootFinder.class);
+        when(rootFinder.findRoot(any(), anyDouble())).thenReturn(0.5);
+
+        final double xirr = Xirr.builder()
+            .withRootFinder(rootFinder)
+            .withGuess(0.25)
+            .withTransactions(
+                new Transaction(-1000, "2010-01-01"),
+                new Transaction( 1100, "2011-01-01"))
+            .xirr();
+
+        assertEquals(0.5, xirr, 0);
+        verify(rootFinder).findRoot(any(), eq(0.25));
+    }
+
+    @Test
+    public void analytics() {
+        final Xirr.Analytics analytics = Xirr.builder()
+            .withTransactions(
+                new Transaction(-1000, "2010-01-01"),
+                new Transaction(  200, "2010-07-02"),
+                new Transaction(  600, "2011-01-01"),
+                new Transaction(  400, "2011-01-01"))
+            .withHurdleRate(0.05)
+            .build()
+            .analytics();
+        final double years = 183 / 365.0;
+        assertEquals(new Xirr(
+                new Transaction(-1000, "2010-01-01"),
+                new Transaction(  200, "2010-07-02"),
+                new Transaction( 1000, "2011-01-01")).xirr(),
+            analytics.getXirr(), 0);
+        assertEquals(0.05, analytics.getHurdleRate(), 0);
+        assertEquals(-1000 + 200 / Math.pow(1.05, 1 - years) + 1000 / 1.05,
+            analytics.getNetPresentValue(), 1e-9);
+        assertEquals(1000, analytics.getPaidIn(), 0);
+        assertEquals(200, analytics.getDistributions(), 0);
+        assertEquals(1000, analytics.getResidualValue(), 0);
+        assertEquals(0.2, analytics.getDpi(), 1e-15);
+        assertEquals(1.2, analytics.getTvpi(), 1e-15);
+        assertEquals(1.2, analytics.getMoic(), 1e-15);
+        assertEquals(200 / (1000 - 200 * years), analytics.getModifiedDietz(), 1e-12);
+    }
+
+    @Test
+    public void analytics_defaults() {
+        final Xirr.Analytics analytics = new Xirr(
+            new Transaction(-1000, "2010-01-01"),
+            new Transaction( 1100, "2011-01-01")).analytics();
+        assertEquals(0.1, analytics.getXirr(), TOLERANCE);
+        assertEquals(100, analytics.getNetPresentValue(), 1e-9);
+        assertEquals(0, analytics.getDpi(), 0);
+        assertEquals(0.1, analytics.getModifiedDietz(), 1e-12);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void withHurdleRate_invalid() {
+        Xirr.builder().withHurdleRate(-1);
+    }
+
+    @Test
+    public void withSortedTransactions() {
+        final Xirr.Builder builder = Xirr.builder()
+            .withTransactions(
+                new Transaction(-1000, "2010-01-01"),
+                new Transaction(  200, "2010-07-02"),
+                new Transaction(  600, "2011-01-01"),
+                new Transaction(  400, "2011-01-01"))
+            .withHurdleRate(0.05);
+        final Xirr.Analytics unsorted = builder.build().analytics();
+        final Xirr.Analytics sorted = builder.withSortedTransactions(true).build().analytics();
+        assertEquals(unsorted.getXirr(), sorted.getXirr(), 0);
+        assertEquals(unsorted.getNetPresentValue(), sorted.getNetPresentValue(), 0);
+        assertEquals(1000, sorted.getResidualValue(), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void withSortedTransactions_out_of_order() {
+        Xirr.builder()
+            .withTransactions(
+                new Transaction(-1000, "2010-01-01"),
+                new Transaction( 1100, "2011-01-01"),
+                new Transaction( -100, "2010-07-01"))
+            .withSortedTransactions(true)
+            .build();
+    }
+
+    private NewtonRaphson.Builder setUpNewtonRaphsonBuilder(NewtonRaphson newtonRaphson)
     {
         final NewtonRaphson.Builder builder = mock(NewtonRaphson.Builder.class);
         when(builder.withFunction(any())).thenReturn(builder);
         when(builder.withDerivative(any())).thenReturn(builder);
+        when(builder.copy()).thenReturn(builder);
+        when(builder.build()).thenReturn(newtonRaphson);
         return builder;
     }
 
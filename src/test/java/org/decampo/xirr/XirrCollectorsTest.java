@@ -0,0 +1,109 @@
+package org.decampo.xirr;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import org.junit.Test;
+
+import static org.decampo.xirr.NewtonRaphson.TOLERANCE;
+import static org.junit.Assert.assertEquals;
+
+public class XirrCollectorsTest {
+
+    @Test
+    public void xirr_matches_xirr() {
+        final List<Transaction> txs = Arrays.asList(
+            new Transaction(-1000, "2010-01-01"),
+            new Transaction(-2500, "2010-06-15"),
+            new Transaction( 3700, "2012-03-31"));
+        final double expected = new Xirr(txs).xirr();
+        assertEquals(expected, txs.stream().collect(XirrCollectors.xirr()), 0);
+        assertEquals(expected, txs.stream().collect(XirrCollectors.toXirr()).xirr(), 0);
+    }
+
+    @Test
+    public void xirr_convention() {
+        final double xirr = Arrays.asList(
+            new Transaction(-1000, "2010-01-01"),
+            new Transaction(  900, "2011-01-01")
+        ).stream().collect(XirrCollectors.xirr(DayCountConvention.ACT_360));
+        assertEquals(-0.0987, xirr, TOLERANCE);
+    }
+
+    @Test
+    public void grouping_parallel() {
+        // Many accounts, each with enough transactions to be split across
+        // the parallel stream
+        final List<String[]> rows = new ArrayList<>();
+        final LocalDate start = LocalDate.parse("2010-01-01");
+        for (int account = 0; account < 20; account++) {
+            for (int month = 0; month < 200; month++) {
+                final double amount = month == 199 ? 250_000 + 1000 * account : -1000;
+                rows.add(new String[] {
+                    "account" + account,
+                    Double.toString(amount),
+                    start.plusMonths(month).toString()});
+            }
+        }
+
+        final Map<String, Double> parallel = rows.parallelStream()
+            .collect(Collectors.groupingBy(row -> row[0], XirrCollectors.xirr(
+                row -> Double.parseDouble(row[1]), row -> LocalDate.parse(row[2]))));
+
+        assertEquals(20, parallel.size());
+        for (Map.Entry<String, Double> entry : parallel.entrySet()) {
+            final List<Transaction> txs = rows.stream()
+                .filter(row -> row[0].equals(entry.getKey()))
+                .map(row -> new Transaction(Double.parseDouble(row[1]), row[2]))
+                .collect(Collectors.toList());
+            assertEquals(entry.getKey(), new Xirr(txs).xirr(), entry.getValue(), TOLERANCE);
+        }
+    }
+
+    @Test
+    public void xirr_extractors_convention() {
+        final List<Transaction> txs = Arrays.asList(
+            new Transaction(-1000, "2010-01-01"),
+            new Transaction(  900, "2011-01-01"));
+        final double expected = Xirr.builder()
+            .withTransactions(txs)
+            .withDayCountConvention(DayCountConvention.ACT_360)
+            .build()
+            .xirr();
+        final double xirr = txs.stream().collect(XirrCollectors.xirr(
+            tx -> tx.amount, tx -> tx.when,
+            DayCountConvention.ACT_360));
+        assertEquals(expected, xirr, TOLERANCE);
+        assertEquals(-0.0987, xirr, TOLERANCE);
+    }
+
+    @Test
+    public void toXirr_parallel_keeps_order() {
+        final List<Transaction> txs = new ArrayList<>();
+        final LocalDate start = LocalDate.parse("2010-01-01");
+        double deposits = 0;
+        for (int month = 0; month < 999; month++) {
+            final double amount = 100 + month;
+            txs.add(new Transaction(-amount, start.plusMonths(month)));
+            deposits += amount;
+        }
+        txs.add(new Transaction(1.5 * deposits, start.plusMonths(999)));
+
+        final Xirr expected = new Xirr(txs);
+        final Xirr parallel = txs.parallelStream().collect(XirrCollectors.toXirr());
+        final double rate = expected.xirr();
+        assertEquals(rate, parallel.xirr(), TOLERANCE);
+        for (int i = 0; i < txs.size(); i++) {
+            assertEquals(expected.amountFor(i, rate), parallel.amountFor(i, rate), TOLERANCE);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void xirr_invalid() {
+        Arrays.asList(new Transaction(-1000, "2010-01-01"))
+            .stream().collect(XirrCollectors.xirr());
+    }
+}
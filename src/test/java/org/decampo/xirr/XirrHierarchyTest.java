@@ -0,0 +1,110 @@
+package org.decampo.xirr;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+import static org.decampo.xirr.NewtonRaphson.TOLERANCE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class XirrHierarchyTest {
+
+    private final List<Transaction> position1 = Arrays.asList(
+        new Transaction(-1000, "2010-01-01"),
+        new Transaction(-1000, "2010-04-01"),
+        new Transaction(-1000, "2010-07-01"),
+        new Transaction(-1000, "2010-10-01"),
+        new Transaction( 4300, "2011-01-01"));
+    private final List<Transaction> position2 = Arrays.asList(
+        new Transaction(-2000, "2010-01-01"),
+        new Transaction( 2200, "2011-01-01"));
+    private final List<Transaction> position3 = Arrays.asList(
+        new Transaction(-1000, "2010-06-01"),
+        new Transaction(  900, "2011-01-01"));
+
+    @Test
+    public void xirrs_match_concatenated_transactions() {
+        final Map<String, Double> rates = XirrHierarchy.<String>builder()
+            .withTransactions("p1", position1)
+            .withTransactions("p2", position2)
+            .withTransactions("p3", position3)
+            .withChild("a1", "p1")
+            .withChild("a1", "p2")
+            .withChild("a2", "p3")
+            .withChild("firm", "a1")
+            .withChild("firm", "a2")
+            .xirrs();
+
+        assertEquals(6, rates.size());
+        assertEquals(new Xirr(position1).xirr(), rates.get("p1"), TOLERANCE);
+        assertEquals(0.10, rates.get("p2"), TOLERANCE);
+        assertEquals(new Xirr(position3).xirr(), rates.get("p3"), TOLERANCE);
+        assertEquals(new Xirr(concat(position1, position2)).xirr(),
+            rates.get("a1"), TOLERANCE);
+        assertEquals(rates.get("p3"), rates.get("a2"), TOLERANCE);
+        assertEquals(new Xirr(concat(position1, position2, position3)).xirr(),
+            rates.get("firm"), TOLERANCE);
+
+        // Descendants are reported before their ancestors
+        final List<String> order = new ArrayList<>(rates.keySet());
+        assertTrue(order.indexOf("p1") < order.indexOf("a1"));
+        assertTrue(order.indexOf("a1") < order.indexOf("firm"));
+    }
+
+    @Test
+    public void xirrs_parent_with_own_transactions() {
+        final Map<String, Double> rates = XirrHierarchy.<String>builder()
+            .withTransactions("a1", position2)
+            .withTransactions("p1", position1)
+            .withChild("a1", "p1")
+            .xirrs();
+        assertEquals(new Xirr(concat(position1, position2)).xirr(),
+            rates.get("a1"), TOLERANCE);
+    }
+
+    @Test
+    public void xirrs_invalid_node_is_nan() {
+        final Map<String, Double> rates = XirrHierarchy.<String>builder()
+            .withTransactions("p1", new Transaction(-1000, "2010-01-01"))
+            .withTransactions("p2", position2)
+            .withChild("a1", "p1")
+            .withChild("a1", "p2")
+            .xirrs();
+        assertTrue(rates.get("p1").isNaN());
+        assertEquals(new Xirr(concat(position2,
+                Arrays.asList(new Transaction(-1000, "2010-01-01")))).xirr(),
+            rates.get("a1"), TOLERANCE);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void xirrs_cycle() {
+        XirrHierarchy.<String>builder()
+            .withTransactions("p1", position1)
+            .withChild("a1", "p1")
+            .withChild("p1", "a1")
+            .xirrs();
+        fail("Expected exception for cycle");
+    }
+
+    @SafeVarargs
+    private static List<Transaction> concat(List<Transaction>... lists) {
+        final List<Transaction> result = new ArrayList<>();
+        for (List<Transaction> list : lists) {
+            result.addAll(list);
+        }
+        return result;
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void intraday_rejected() {
+        XirrHierarchy.<String>builder()
+            .withTransactions("position",
+                new Transaction(-1000, Instant.parse("2020-01-01T00:00:00Z")),
+                new Transaction( 1100, Instant.parse("2020-01-02T23:00:00Z")));
+    }
+}
@@ -0,0 +1,103 @@
+package org.decampo.xirr;
+
+import java.time.LocalDate;
+import java.util.Random;
+import org.junit.Test;
+
+import static org.decampo.xirr.NewtonRaphson.TOLERANCE;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class XirrScenariosTest {
+
+    private static final LocalDate[] DATES = {
+        LocalDate.parse("2010-01-01"),
+        LocalDate.parse("2010-07-01"),
+        LocalDate.parse("2011-01-01"),
+        LocalDate.parse("2013-06-30")
+    };
+
+    private static double[][] scenarios(int count) {
+        final Random random = new Random(42);
+        final double[][] scenarios = new double[count][];
+        for (int k = 0; k < count; k++) {
+            scenarios[k] = new double[] {
+                -1000, -500, -250, 1750 * (0.5 + random.nextDouble())
+            };
+        }
+        return scenarios;
+    }
+
+    @Test
+    public void xirrs_match_xirr() {
+        final double[][] scenarios = scenarios(1000);
+        final XirrScenarios.Distribution distribution = XirrScenarios.builder()
+            .withDates(DATES)
+            .withChunkSize(100)
+            .build()
+            .xirrs(scenarios);
+
+        final double[] rates = distribution.getRates();
+        assertEquals(0, distribution.getFailures());
+        for (int k = 0; k < scenarios.length; k += 37) {
+            final Transaction[] txs = new Transaction[DATES.length];
+            for (int i = 0; i < txs.length; i++) {
+                txs[i] = new Transaction(scenarios[k][i], DATES[i]);
+            }
+            assertEquals(new Xirr(txs).xirr(), rates[k], TOLERANCE);
+        }
+
+        // Sequential solves yield the same results
+        assertArrayEquals(rates, XirrScenarios.builder()
+            .withDates(DATES)
+            .withChunkSize(100)
+            .withParallel(false)
+            .build()
+            .xirrs(scenarios)
+            .getRates(), 0);
+    }
+
+    @Test
+    public void percentiles() {
+        final XirrScenarios.Distribution distribution = XirrScenarios.builder()
+            .withDates(DATES)
+            .build()
+            .xirrs(scenarios(101));
+        final double min = distribution.percentile(0);
+        final double median = distribution.percentile(50);
+        final double max = distribution.percentile(100);
+        assertTrue(min < median && median < max);
+        int below = 0;
+        for (double rate : distribution.getRates()) {
+            if (rate < median) {
+                below++;
+            }
+        }
+        assertEquals(50, below);
+    }
+
+    @Test
+    public void invalid_scenarios() {
+        final XirrScenarios.Distribution distribution = XirrScenarios.builder()
+            .withDates(DATES)
+            .build()
+            .xirrs(new double[][] {
+                {-1000, -500, -250, 0},
+                {1000, 500, 250, 0},
+                {-1000, 0, 0, 1100}
+            });
+        final double[] rates = distribution.getRates();
+        assertEquals(-1, rates[0], 0);
+        assertTrue(Double.isNaN(rates[1]));
+        assertEquals(1, distribution.getFailures());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void wrong_length() {
+        XirrScenarios.builder()
+            .withDates(DATES)
+            .build()
+            .xirrs(new double[][] {{-1000, 1100}});
+    }
+}
@@ -0,0 +1,118 @@
+package org.decampo.xirr;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+import org.junit.Test;
+
+import static org.decampo.xirr.NewtonRaphson.TOLERANCE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class XirrServiceTest {
+
+    private final List<Transaction> transactions = Arrays.asList(
+        new Transaction(-1000, "2010-01-01"),
+        new Transaction(-1000, "2010-04-01"),
+        new Transaction(-1000, "2010-07-01"),
+        new Transaction(-1000, "2010-10-01"),
+        new Transaction( 4300, "2011-01-01"));
+
+    @Test
+    public void xirr_many_requests() throws Exception {
+        try (XirrService service = XirrService.builder()
+                .withParallelism(2)
+                .withBatchSize(4)
+                .build()) {
+            final List<CompletableFuture<Double>> futures = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                futures.add(service.xirr(transactions));
+            }
+            for (CompletableFuture<Double> future : futures) {
+                assertEquals(0.1212676, future.get(), TOLERANCE);
+            }
+        }
+    }
+
+    @Test
+    public void xirr_invalid_transactions() throws Exception {
+        try (XirrService service = XirrService.builder().build()) {
+            service.xirr(Arrays.asList(
+                    new Transaction(-1000, "2010-01-01"),
+                    new Transaction(-1000, "2011-01-01")))
+                .get();
+            fail("Expected exception for all transactions negative");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalArgumentException);
+        }
+    }
+
+    @Test
+    public void xirr_timeout_and_admission() throws Exception {
+        try (XirrService service = XirrService.builder()
+                .withMaxPending(1)
+                .withTimeout(Duration.ofMillis(50))
+                // Never converges, so only the timeout stops it
+                .withNewtonRaphsonBuilders(() -> NewtonRaphson.builder()
+                    .withTolerance(0)
+                    .withIterations(Long.MAX_VALUE))
+                .build()) {
+            final CompletableFuture<Double> slow = service.xirr(transactions);
+            try {
+                service.xirr(transactions).get();
+                fail("Expected rejection while a request is pending");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof RejectedExecutionException);
+            }
+            try {
+                slow.get();
+                fail("Expected timeout");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof TimeoutException);
+            }
+
+            // The abandoned solve releases its admission permit
+            final long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+            while (true) {
+                try {
+                    service.xirr(transactions).get();
+                    fail("Expected timeout");
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof TimeoutException) {
+                        break;
+                    }
+                    assertTrue(e.getCause() instanceof RejectedExecutionException);
+                    assertTrue(System.nanoTime() < deadline);
+                    Thread.sleep(10);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void xirr_after_close() throws Exception {
+        final XirrService service = XirrService.builder()
+            .withMaxPending(1)
+            .withTimeout(Duration.ofSeconds(1))
+            .build();
+        assertEquals(0.1212676, service.xirr(transactions).get(), TOLERANCE);
+        service.close();
+        for (int i = 0; i < 2; i++) {
+            // Fails the same way each time, so no admission permit is leaked
+            final CompletableFuture<Double> future = service.xirr(transactions);
+            try {
+                future.get();
+                fail("Expected rejection after close");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof RejectedExecutionException);
+                assertEquals("xirr service closed", e.getCause().getMessage());
+            }
+        }
+    }
+}
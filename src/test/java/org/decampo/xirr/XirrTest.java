@@ -1,11 +1,18 @@
 package org.decampo.xirr;
 
+import java.math.BigDecimal;
+import java.math.MathContext;
 import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Random;
 import org.junit.Test;
 
 import static org.decampo.xirr.NewtonRaphson.TOLERANCE;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.fail;
 
@@ -227,6 +234,146 @@ public class XirrTest {
         assertEquals(0.07017195, xirr, TOLERANCE);
     }
 
+    @Test
+    public void rateFor_zero_matches_xirr() {
+        final Xirr xirr = new Xirr(
+                new Transaction(-1000, "2010-01-01"),
+                new Transaction(-1000, "2010-04-01"),
+                new Transaction(-1000, "2010-07-01"),
+                new Transaction(-1000, "2010-10-01"),
+                new Transaction( 4300, "2011-01-01")
+            );
+        assertEquals(0.1212676, xirr.rateFor(0), TOLERANCE);
+    }
+
+    @Test
+    public void rateFor_target() {
+        // 1100 - 1000 * (1 + r) = 50 => r = 5%
+        final Xirr xirr = new Xirr(
+                new Transaction(-1000, "2010-01-01"),
+                new Transaction( 1100, "2011-01-01")
+            );
+        assertEquals(0.05, xirr.rateFor(50), TOLERANCE);
+        final double rate = xirr.rateFor(-200);
+        assertEquals(-200, xirr.presentValue(rate), TOLERANCE);
+    }
+
+    @Test
+    public void amountFor_terminal_value() {
+        final Xirr xirr = new Xirr(
+                new Transaction(-1000, "2010-01-01"),
+                new Transaction(-1000, "2010-04-01"),
+                new Transaction(-1000, "2010-07-01"),
+                new Transaction(-1000, "2010-10-01"),
+                new Transaction( 4300, "2011-01-01")
+            );
+        final double amount = xirr.amountFor(4, 0.08);
+        final double rate = new Xirr(
+                new Transaction(-1000, "2010-01-01"),
+                new Transaction(-1000, "2010-04-01"),
+                new Transaction(-1000, "2010-07-01"),
+                new Transaction(-1000, "2010-10-01"),
+                new Transaction(amount, "2011-01-01")
+            ).xirr();
+        assertEquals(0.08, rate, TOLERANCE);
+    }
+
+    @Test
+    public void amountFor_initial_deposit() {
+        final Xirr xirr = new Xirr(
+                new Transaction(-1000, "2010-01-01"),
+                new Transaction( 1100, "2011-01-01")
+            );
+        assertEquals(-1000, xirr.amountFor(0, 0.10), TOLERANCE);
+        assertEquals(-1000 / 1.1, xirr.amountFor(0, 0.10, 100), TOLERANCE);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void amountFor_invalid_rate() {
+        new Xirr(
+                new Transaction(-1000, "2010-01-01"),
+                new Transaction( 1100, "2011-01-01")
+            ).amountFor(0, -1);
+        fail("Expected exception for rate of -100%");
+    }
+
+    @Test
+    public void presentValues_matches_presentValue() {
+        final Xirr xirr = new Xirr(
+                new Transaction(-1000, "2010-01-01"),
+                new Transaction(-1000, "2010-04-01"),
+                new Transaction(-1000, "2010-07-01"),
+                new Transaction(-1000, "2010-10-01"),
+                new Transaction( 4300, "2011-01-01")
+            );
+        final double[] rates = new double[200];
+        for (int i = 0; i < rates.length; i++) {
+            rates[i] = -2.5 + i * 0.025;
+        }
+        final double[] values = new double[rates.length];
+        final double[] derivatives = new double[rates.length];
+        xirr.presentValues(rates, values, derivatives, false);
+        for (int i = 0; i < rates.length; i++) {
+            assertEquals(xirr.presentValue(rates[i]), values[i], TOLERANCE);
+            assertEquals(xirr.derivative(rates[i]), derivatives[i], TOLERANCE);
+        }
+
+        final double[] parallel = new double[rates.length];
+        xirr.presentValues(rates, parallel, null, true);
+        assertArrayEquals(values, parallel, 0);
+        assertArrayEquals(values, xirr.presentValues(rates), 0);
+    }
+
+    @Test
+    public void presentValues_matches_presentValue_long_series() {
+        final Xirr xirr = PresentValuesBenchmark.series(new Random(3), 401);
+        final double[] rates = new double[300];
+        for (int i = 0; i < rates.length; i++) {
+            rates[i] = -0.9 + i * 0.01;
+        }
+        final double[] values = new double[rates.length];
+        final double[] derivatives = new double[rates.length];
+        xirr.presentValues(rates, values, derivatives, false);
+        for (int i = 0; i < rates.length; i++) {
+            final double value = xirr.presentValue(rates[i]);
+            final double derivative = xirr.derivative(rates[i]);
+            assertEquals(value, values[i], 1e-12 * Math.max(1, Math.abs(value)));
+            assertEquals(derivative, derivatives[i], 1e-12 * Math.abs(derivative));
+        }
+    }
+
+    @Test
+    public void roots_two_sign_changes() {
+        // -100 (1+r)^2 + 230 (1+r) - 132 = 0 => r = 10% or r = 20%
+        final Xirr xirr = new Xirr(
+                new Transaction(-100, "2010-01-01"),
+                new Transaction( 230, "2011-01-01"),
+                new Transaction(-132, "2012-01-01")
+            );
+        assertEquals(2, xirr.maxRoots());
+        final double[] roots = xirr.roots(-0.99, 10);
+        assertEquals(2, roots.length);
+        assertEquals(0.10, roots[0], TOLERANCE);
+        assertEquals(0.20, roots[1], TOLERANCE);
+        assertArrayEquals(roots, xirr.roots(-0.99, 10), 0);
+    }
+
+    @Test
+    public void roots_conventional() {
+        final Xirr xirr = new Xirr(
+                new Transaction(-1000, "2010-01-01"),
+                new Transaction(-1000, "2010-04-01"),
+                new Transaction(-1000, "2010-07-01"),
+                new Transaction(-1000, "2010-10-01"),
+                new Transaction( 4300, "2011-01-01")
+            );
+        assertEquals(1, xirr.maxRoots());
+        final double[] roots = xirr.roots(-0.5, 1);
+        assertEquals(1, roots.length);
+        assertEquals(0.1212676, roots[0], TOLERANCE);
+        assertEquals(0, xirr.roots(0.5, 1).length);
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void xirr_no_transactions() {
         // throws exception when no transactions are passed
@@ -241,6 +388,148 @@ public class XirrTest {
         fail("Expected exception for only one transaction");
     }
 
+    @Test
+    public void xirr_intraday() {
+        // the time of day counts towards the year fraction
+        final double xirr = new Xirr(
+                new Transaction(-1000, Instant.parse("2010-01-01T00:00:00Z")),
+                new Transaction( 1100, Instant.parse("2011-01-01T12:00:00Z"))
+            ).xirr();
+        assertEquals(Math.pow(1.1, 365 / 365.5) - 1, xirr, TOLERANCE);
+    }
+
+    @Test
+    public void xirr_intraday_same_day() {
+        // instants on the same day are distinct
+        final double xirr = new Xirr(
+                Transaction.ofEpochMilli(-1000, Instant.parse("2010-01-01T00:00:00Z").toEpochMilli()),
+                Transaction.ofEpochMilli( 1001, Instant.parse("2010-01-01T12:00:00Z").toEpochMilli())
+            ).xirr();
+        assertEquals(Math.pow(1.001, 730) - 1, xirr, TOLERANCE);
+    }
+
+    @Test
+    public void xirr_intraday_whole_days() {
+        // conventions other than actual ignore the time of day
+        final double xirr = Xirr.builder()
+            .withTransactions(
+                new Transaction(-1000, Instant.parse("2012-01-01T06:00:00Z")),
+                new Transaction( 1100, Instant.parse("2013-01-01T18:00:00Z")))
+            .withDayCountConvention(DayCountConvention.ACT_ACT)
+            .xirr();
+        assertEquals(0.1, xirr, TOLERANCE);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void xirr_intraday_same_whole_day() {
+        // under a convention counting whole days, times of the same day
+        // span no time at all
+        Xirr.builder()
+            .withTransactions(
+                new Transaction(-1000, Instant.parse("2012-01-01T06:00:00Z")),
+                new Transaction( 1100, Instant.parse("2012-01-01T18:00:00Z")))
+            .withDayCountConvention(DayCountConvention.THIRTY_360)
+            .xirr();
+    }
+
+    @Test
+    public void transaction_instants() throws Exception {
+        final Instant instant = Instant.parse("2010-01-01T23:30:00Z");
+        final Transaction tx = Transaction.ofEpochMilli(1, instant.toEpochMilli());
+        assertEquals(LocalDate.parse("2010-01-01"), tx.getWhen());
+        assertEquals(instant, tx.getInstant());
+
+        final Transaction day = new Transaction(1, "2010-01-01");
+        assertEquals(Instant.parse("2010-01-01T00:00:00Z"), day.getInstant());
+
+        final SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm");
+        final Transaction date = new Transaction(1, format.parse("2010-01-01 23:30"),
+            ZoneId.systemDefault());
+        assertEquals(LocalDate.parse("2010-01-01"), date.getWhen());
+        assertEquals(day.getEpochMilli(), date.getEpochMilli());
+    }
+
+    @Test
+    public void verify_exact_amounts() {
+        final Xirr xirr = new Xirr(
+            new Transaction(new BigDecimal("-1000.01"), "2010-01-01"),
+            Transaction.ofScaled(-250025, 2, LocalDate.parse("2010-06-15")),
+            new Transaction(new BigDecimal("3700.37"), "2012-03-31"));
+        final Xirr.Verification verification = xirr.verifiedXirr();
+        final double rate = verification.getRate();
+        assertEquals(rate, xirr.xirr(), 0);
+        assertEquals(xirr.presentValue(rate),
+            verification.getResidual().doubleValue(), 1e-9);
+        // The refined rate is a root to far more than double precision
+        final Xirr.Verification refined = xirr.verify(
+            verification.getRefinedRate().doubleValue());
+        assertEquals(rate, refined.getRate(), 1e-9);
+        assertEquals(0, refined.getResidual().doubleValue(), 1e-9);
+    }
+
+    @Test
+    public void verify_exact_root() {
+        final Xirr.Verification verification = new Xirr(
+            new Transaction(new BigDecimal("-1000"), "2010-01-01"),
+            new Transaction(new BigDecimal("1250"), "2011-01-01")
+        ).verify(0.25, MathContext.DECIMAL64);
+        assertEquals(0, verification.getResidual().signum());
+        assertEquals(0, new BigDecimal("0.25").compareTo(verification.getRefinedRate()));
+    }
+
+    @Test
+    public void verify_total_loss() {
+        final Xirr.Verification verification = new Xirr(
+            new Transaction(-1000, "2010-01-01"),
+            new Transaction(0, "2011-01-01")
+        ).verifiedXirr();
+        assertEquals(-1, verification.getRate(), 0);
+        assertEquals(0, verification.getResidual().signum());
+    }
+
+    @Test
+    public void sensitivities_match_bumps() {
+        final double[] amounts = {-1000, -2500, 3700};
+        final LocalDate[] dates = {
+            LocalDate.parse("2010-01-01"),
+            LocalDate.parse("2010-06-15"),
+            LocalDate.parse("2012-03-31")
+        };
+        final Xirr.Sensitivities sensitivities =
+            xirr(amounts, dates).sensitivities();
+        final double rate = sensitivities.getRate();
+        final double[] byAmount = sensitivities.getAmountSensitivities();
+        final double[] byDate = sensitivities.getDateSensitivities();
+        for (int i = 0; i < amounts.length; i++) {
+            final double[] bumped = amounts.clone();
+            bumped[i] += 1;
+            final double amountRate = xirr(bumped, dates).xirr();
+            assertEquals(amountRate - rate, byAmount[i], 1e-7);
+            assertEquals(amountRate, sensitivities.estimateRate(i, 1), 1e-7);
+
+            final LocalDate[] moved = dates.clone();
+            moved[i] = moved[i].plusDays(1);
+            final double dateRate = xirr(amounts, moved).xirr();
+            assertEquals(dateRate - rate, byDate[i], 1e-6);
+        }
+        final double[] dayChanges = {0, 2, 0};
+        final LocalDate[] moved = dates.clone();
+        moved[1] = moved[1].plusDays(2);
+        assertEquals(xirr(amounts, moved).xirr(),
+            sensitivities.estimateRate(null, dayChanges), 1e-6);
+    }
+
+    private static Xirr xirr(double[] amounts, LocalDate[] dates) {
+        final Transaction[] txs = new Transaction[amounts.length];
+        for (int i = 0; i < txs.length; i++) {
+            txs[i] = new Transaction(amounts[i], dates[i]);
+        }
+        return Xirr.builder()
+            .withTransactions(txs)
+            .withNewtonRaphsonBuilder(NewtonRaphson.builder().withTolerance(1e-12))
+            .build();
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void xirr_same_day() throws Exception {
         // throws an exception when all transactions are on the same day
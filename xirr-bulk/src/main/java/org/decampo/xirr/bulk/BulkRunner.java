@@ -0,0 +1,710 @@
+package org.decampo.xirr.bulk;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.function.UnaryOperator;
+import org.decampo.xirr.DayCountConvention;
+import org.decampo.xirr.Transaction;
+import org.decampo.xirr.Xirr;
+
+/**
+ * Computes the irregular rate of return of every series of transactions in a
+ * delimited file, streaming the file so that it may be larger than memory.
+ * <p>
+ * Each row of the input has three fields: the identifier of the series, the
+ * date of the transaction in ISO format and the amount of the transaction,
+ * e.g. <code>fund-7,2016-01-15,-1000</code>.  The rows of a series must be
+ * contiguous; a series whose identifier reappears after another series is
+ * solved again as a separate series.  Each series yields a row of output
+ * with its identifier and rate, or its identifier, an empty rate and the
+ * reason it could not be solved: <code>fund-8,,"NonconvergenceException:
+ * ..."</code>.  The output is in the order of the input.  Identifiers and
+ * reasons containing the delimiter, a quote or a line break are quoted, with
+ * quotes doubled.
+ * <p>
+ * The work is pipelined in four stages connected by bounded queues: a reader
+ * thread reads chunks of lines, a grouper thread parses them and groups the
+ * rows into batches of series, a pool of solver threads (one per core by
+ * default) solves the batches and a writer thread restores the order of the
+ * batches and writes them.  When a stage falls behind the queues before it
+ * fill and the earlier stages block, and the grouper stops once the queue
+ * capacity plus the number of solver threads of batches await writing, so
+ * the memory used is bounded by the queue capacity and the batch size
+ * regardless of the size of the input or of a slow batch holding up the
+ * order.
+ * <p>
+ * Usage: <code>BulkRunner [options] input output</code>, with the options
+ * <ul>
+ * <li><code>--threads n</code> the number of solver threads</li>
+ * <li><code>--batch n</code> the number of series per batch and lines per chunk</li>
+ * <li><code>--queue n</code> the capacity of each queue, in batches</li>
+ * <li><code>--header</code> to skip the first line of the input</li>
+ * <li><code>--delimiter c</code> the field delimiter, a comma by default</li>
+ * <li><code>--convention c</code> one of ACT/365 (the default), ACT/360,
+ *     ACT/ACT or 30/360</li>
+ * <li><code>--log-space</code> for {@link Xirr.Builder#withLogSpaceEvaluation(boolean)}</li>
+ * <li><code>--fast</code> for {@link Xirr.Builder#withFastApproximation(boolean)}</li>
+ * </ul>
+ * The statistics are printed to standard error at the end.
+ */
+public class BulkRunner {
+    private static final int DEFAULT_BATCH_SIZE = 256;
+    private static final int DEFAULT_QUEUE_CAPACITY = 64;
+
+    /**
+     * Convenience method for getting an instance of a {@link Builder}.
+     * @return new Builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private final int threads;
+    private final int batchSize;
+    private final int queueCapacity;
+    private final boolean header;
+    private final char delimiter;
+    private final UnaryOperator<Xirr.Builder> configure;
+
+    private BulkRunner(
+        int threads,
+        int batchSize,
+        int queueCapacity,
+        boolean header,
+        char delimiter,
+        UnaryOperator<Xirr.Builder> configure) {
+        this.threads = threads;
+        this.batchSize = batchSize;
+        this.queueCapacity = queueCapacity;
+        this.header = header;
+        this.delimiter = delimiter;
+        this.configure = configure;
+    }
+
+    /**
+     * Solve every series of the input file and write the results to the
+     * output file.
+     * @param input the input file
+     * @param output the output file, replaced if it exists
+     * @return the statistics of the run
+     * @throws IOException if the files cannot be read or written
+     * @throws InterruptedException if interrupted while waiting for the stages
+     */
+    public Statistics run(Path input, Path output) throws IOException, InterruptedException {
+        try (BufferedReader in = Files.newBufferedReader(input, StandardCharsets.UTF_8);
+             BufferedWriter out = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+            return run(in, out);
+        }
+    }
+
+    /**
+     * Solve every series read from the given reader and write the results to
+     * the given writer.  Neither is closed.
+     * @param in the input
+     * @param out the output
+     * @return the statistics of the run
+     * @throws IOException if the input cannot be read or the output written
+     * @throws InterruptedException if interrupted while waiting for the stages
+     */
+    public Statistics run(BufferedReader in, Writer out) throws IOException, InterruptedException {
+        final long start = System.nanoTime();
+        final BlockingQueue<Chunk> chunks = new ArrayBlockingQueue<>(queueCapacity);
+        final BlockingQueue<Batch> batches = new ArrayBlockingQueue<>(queueCapacity);
+        final BlockingQueue<Batch> solved = new ArrayBlockingQueue<>(queueCapacity);
+        final List<Solver> solvers = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) {
+            solvers.add(new Solver(batches, solved));
+        }
+        // The batches read but not yet written, including those awaiting an
+        // earlier batch in the writer
+        final Semaphore window = new Semaphore(queueCapacity + threads);
+        final Grouper grouper = new Grouper(chunks, batches, window);
+        final Writing writer = new Writing(solved, out, window);
+
+        final ExecutorService executor = Executors.newFixedThreadPool(threads + 3);
+        final CompletionService<Void> stages = new ExecutorCompletionService<>(executor);
+        final List<Future<Void>> futures = new ArrayList<>(threads + 3);
+        try {
+            futures.add(stages.submit(() -> read(in, chunks)));
+            futures.add(stages.submit(grouper));
+            for (Solver solver : solvers) {
+                futures.add(stages.submit(solver));
+            }
+            futures.add(stages.submit(writer));
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    stages.take().get();
+                } catch (ExecutionException e) {
+                    // One failed stage would leave the others blocked on
+                    // their queues forever
+                    executor.shutdownNow();
+                    final Throwable cause = e.getCause();
+                    if (cause instanceof IOException) {
+                        throw (IOException) cause;
+                    }
+                    if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    }
+                    if (cause instanceof Error) {
+                        throw (Error) cause;
+                    }
+                    throw new IllegalStateException(cause);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        final Statistics statistics = new Statistics();
+        statistics.rows = grouper.rows;
+        statistics.series = grouper.series;
+        for (Solver solver : solvers) {
+            statistics.converged += solver.converged;
+            statistics.solveLatency.add(solver.latency);
+        }
+        statistics.failed = statistics.series - statistics.converged;
+        statistics.batchLatency.add(writer.latency);
+        statistics.nanos = System.nanoTime() - start;
+        return statistics;
+    }
+
+    /**
+     * The reader stage: read the input in chunks of lines.
+     */
+    private Void read(final BufferedReader in, final BlockingQueue<Chunk> chunks)
+        throws IOException, InterruptedException {
+        long number = 1;
+        if (header && in.readLine() != null) {
+            number++;
+        }
+        List<String> lines = new ArrayList<>(batchSize);
+        long first = number;
+        String line;
+        while ((line = in.readLine()) != null) {
+            lines.add(line);
+            number++;
+            if (lines.size() == batchSize) {
+                chunks.put(new Chunk(first, lines));
+                lines = new ArrayList<>(batchSize);
+                first = number;
+            }
+        }
+        if (!lines.isEmpty()) {
+            chunks.put(new Chunk(first, lines));
+        }
+        chunks.put(Chunk.END);
+        return null;
+    }
+
+    /**
+     * A chunk of consecutive lines of the input.
+     */
+    private static final class Chunk {
+        static final Chunk END = new Chunk(0, null);
+
+        final long first;
+        final List<String> lines;
+
+        Chunk(long first, List<String> lines) {
+            this.first = first;
+            this.lines = lines;
+        }
+    }
+
+    /**
+     * The rows of one series.
+     */
+    private static final class Series {
+        final String id;
+        final List<Transaction> txs = new ArrayList<>();
+        String error;
+        double rate = Double.NaN;
+
+        Series(String id) {
+            this.id = id;
+        }
+    }
+
+    /**
+     * A batch of series, numbered in the order of the input.
+     */
+    private static final class Batch {
+        static final Batch END = new Batch(-1);
+
+        final long sequence;
+        final long created = System.nanoTime();
+        final List<Series> series = new ArrayList<>();
+
+        Batch(long sequence) {
+            this.sequence = sequence;
+        }
+    }
+
+    /**
+     * The grouping stage: parse the lines and group the rows into batches of
+     * series.  A series may span several chunks.
+     */
+    private final class Grouper implements Callable<Void> {
+        private final BlockingQueue<Chunk> chunks;
+        private final BlockingQueue<Batch> batches;
+        private final Semaphore window;
+        long rows;
+        long series;
+
+        Grouper(BlockingQueue<Chunk> chunks, BlockingQueue<Batch> batches, Semaphore window) {
+            this.chunks = chunks;
+            this.batches = batches;
+            this.window = window;
+        }
+
+        @Override
+        public Void call() throws InterruptedException {
+            long sequence = 0;
+            Batch batch = new Batch(sequence++);
+            Series current = null;
+            for (Chunk chunk = chunks.take(); chunk != Chunk.END; chunk = chunks.take()) {
+                long number = chunk.first;
+                for (String line : chunk.lines) {
+                    final long lineNumber = number++;
+                    if (line.trim().isEmpty()) {
+                        continue;
+                    }
+                    rows++;
+                    final int first = line.indexOf(delimiter);
+                    final String id = first < 0 ? line.trim() : line.substring(0, first).trim();
+                    if (current == null || !current.id.equals(id)) {
+                        if (current != null) {
+                            batch.series.add(current);
+                            series++;
+                            if (batch.series.size() == batchSize) {
+                                window.acquire();
+                                batches.put(batch);
+                                batch = new Batch(sequence++);
+                            }
+                        }
+                        current = new Series(id);
+                    }
+                    if (current.error == null) {
+                        parse(line, first, lineNumber, current);
+                    }
+                }
+            }
+            if (current != null) {
+                batch.series.add(current);
+                series++;
+            }
+            if (!batch.series.isEmpty()) {
+                window.acquire();
+                batches.put(batch);
+            }
+            for (int i = 0; i < threads; i++) {
+                batches.put(Batch.END);
+            }
+            return null;
+        }
+
+        private void parse(String line, int first, long lineNumber, Series series) {
+            final int second = first < 0 ? -1 : line.indexOf(delimiter, first + 1);
+            if (second < 0) {
+                series.error = "Malformed row at line " + lineNumber + ": " + line;
+                return;
+            }
+            try {
+                final LocalDate when = LocalDate.parse(line.substring(first + 1, second).trim());
+                final double amount = Double.parseDouble(line.substring(second + 1).trim());
+                series.txs.add(new Transaction(amount, when));
+            } catch (DateTimeParseException | NumberFormatException e) {
+                series.error = "Malformed row at line " + lineNumber + ": " + line;
+            }
+        }
+    }
+
+    /**
+     * A solver stage thread: solve the series of each batch.
+     */
+    private final class Solver implements Callable<Void> {
+        private final BlockingQueue<Batch> batches;
+        private final BlockingQueue<Batch> solved;
+        final LatencyHistogram latency = new LatencyHistogram();
+        long converged;
+
+        Solver(BlockingQueue<Batch> batches, BlockingQueue<Batch> solved) {
+            this.batches = batches;
+            this.solved = solved;
+        }
+
+        @Override
+        public Void call() throws InterruptedException {
+            for (Batch batch = batches.take(); batch != Batch.END; batch = batches.take()) {
+                for (Series series : batch.series) {
+                    if (series.error != null) {
+                        continue;
+                    }
+                    final long start = System.nanoTime();
+                    try {
+                        series.rate = configure.apply(Xirr.builder().withTransactions(series.txs))
+                            .xirr();
+                        converged++;
+                    } catch (ArithmeticException | IllegalArgumentException e) {
+                        series.error = e.getClass().getSimpleName() + ": " + e.getMessage();
+                    }
+                    latency.record(System.nanoTime() - start);
+                    // The transactions are no longer needed while the batch
+                    // waits to be written
+                    series.txs.clear();
+                }
+                solved.put(batch);
+            }
+            solved.put(Batch.END);
+            return null;
+        }
+    }
+
+    /**
+     * The writer stage: write the batches in the order of the input.  The
+     * batches awaiting an earlier one are bounded by the window shared with
+     * the grouper, released as each batch is written.
+     */
+    private final class Writing implements Callable<Void> {
+        private final BlockingQueue<Batch> solved;
+        private final Writer out;
+        private final Semaphore window;
+        final LatencyHistogram latency = new LatencyHistogram();
+
+        Writing(BlockingQueue<Batch> solved, Writer out, Semaphore window) {
+            this.solved = solved;
+            this.out = out;
+            this.window = window;
+        }
+
+        @Override
+        public Void call() throws InterruptedException, IOException {
+            final Map<Long, Batch> pending = new HashMap<>();
+            long next = 0;
+            int ended = 0;
+            while (ended < threads) {
+                final Batch batch = solved.take();
+                if (batch == Batch.END) {
+                    ended++;
+                    continue;
+                }
+                pending.put(batch.sequence, batch);
+                for (Batch ready = pending.remove(next); ready != null; ready = pending.remove(next)) {
+                    write(ready);
+                    window.release();
+                    next++;
+                }
+            }
+            if (!pending.isEmpty()) {
+                throw new IllegalStateException("Batches lost before " + pending.keySet());
+            }
+            out.flush();
+            return null;
+        }
+
+        private void write(final Batch batch) throws IOException {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedIOException();
+            }
+            final StringBuilder sb = new StringBuilder();
+            for (Series series : batch.series) {
+                sb.append(quote(series.id)).append(delimiter);
+                if (series.error == null) {
+                    sb.append(series.rate);
+                } else {
+                    sb.append(delimiter).append('"')
+                        .append(series.error.replace("\"", "\"\"")).append('"');
+                }
+                sb.append('\n');
+            }
+            out.write(sb.toString());
+            latency.record(System.nanoTime() - batch.created);
+        }
+
+        /**
+         * Quote the given field if it contains the delimiter, a quote or a
+         * line break.
+         */
+        private String quote(final String field) {
+            for (int i = 0; i < field.length(); i++) {
+                final char c = field.charAt(i);
+                if (c == delimiter || c == '"' || c == '\n' || c == '\r') {
+                    return '"' + field.replace("\"", "\"\"") + '"';
+                }
+            }
+            return field;
+        }
+    }
+
+    /**
+     * The statistics of a run.
+     */
+    public static class Statistics {
+        long rows;
+        long series;
+        long converged;
+        long failed;
+        long nanos;
+        final LatencyHistogram solveLatency = new LatencyHistogram();
+        final LatencyHistogram batchLatency = new LatencyHistogram();
+
+        /**
+         * The number of non-blank rows read.
+         * @return the number of rows
+         */
+        public long getRows() {
+            return rows;
+        }
+
+        /**
+         * The number of series read.
+         * @return the number of series
+         */
+        public long getSeries() {
+            return series;
+        }
+
+        /**
+         * The number of series for which a rate was found.
+         * @return the number of series solved
+         */
+        public long getConverged() {
+            return converged;
+        }
+
+        /**
+         * The number of series which were malformed or could not be solved.
+         * @return the number of series which failed
+         */
+        public long getFailed() {
+            return failed;
+        }
+
+        /**
+         * The series solved per second over the whole run.
+         * @return the throughput
+         */
+        public double getSeriesPerSecond() {
+            return nanos > 0 ? series * 1e9 / nanos : Double.NaN;
+        }
+
+        /**
+         * The rows processed per second over the whole run.
+         * @return the throughput
+         */
+        public double getRowsPerSecond() {
+            return nanos > 0 ? rows * 1e9 / nanos : Double.NaN;
+        }
+
+        /**
+         * The time taken to solve each series, excluding malformed series.
+         * @return the latency of the solves
+         */
+        public LatencyHistogram getSolveLatency() {
+            return solveLatency;
+        }
+
+        /**
+         * The time from the grouping of each batch to its being written,
+         * including the time spent waiting in the queues.
+         * @return the latency of the batches
+         */
+        public LatencyHistogram getBatchLatency() {
+            return batchLatency;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("rows=%d series=%d converged=%d failed=%d elapsed=%.3fs "
+                    + "throughput=%.0f series/s (%.0f rows/s)%nsolve latency: %s%nbatch latency: %s",
+                rows, series, converged, failed, nanos / 1e9,
+                getSeriesPerSecond(), getRowsPerSecond(), solveLatency, batchLatency);
+        }
+    }
+
+    /**
+     * Builder for {@link BulkRunner} instances.
+     */
+    public static class Builder {
+        private int threads = Runtime.getRuntime().availableProcessors();
+        private int batchSize = DEFAULT_BATCH_SIZE;
+        private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+        private boolean header = false;
+        private char delimiter = ',';
+        private UnaryOperator<Xirr.Builder> configure = b -> b;
+
+        public Builder() {
+        }
+
+        /**
+         * Set the number of solver threads.  The default is the number of
+         * available processors.
+         * @param threads the number of solver threads
+         * @return this builder
+         * @throws IllegalArgumentException if the number is not positive
+         */
+        public Builder withThreads(int threads) {
+            if (threads <= 0) {
+                throw new IllegalArgumentException("Threads must be positive: " + threads);
+            }
+            this.threads = threads;
+            return this;
+        }
+
+        /**
+         * Set the number of series per batch, which is also the number of
+         * lines per chunk read.  The default is 256.
+         * @param batchSize the batch size
+         * @return this builder
+         * @throws IllegalArgumentException if the size is not positive
+         */
+        public Builder withBatchSize(int batchSize) {
+            if (batchSize <= 0) {
+                throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+            }
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        /**
+         * Set the capacity of each queue between the stages, in chunks or
+         * batches.  The default is 64.
+         * @param queueCapacity the queue capacity
+         * @return this builder
+         * @throws IllegalArgumentException if the capacity is not positive
+         */
+        public Builder withQueueCapacity(int queueCapacity) {
+            if (queueCapacity <= 0) {
+                throw new IllegalArgumentException("Queue capacity must be positive: " + queueCapacity);
+            }
+            this.queueCapacity = queueCapacity;
+            return this;
+        }
+
+        /**
+         * Whether the first line of the input is a header to be skipped.  The
+         * default is false.
+         * @param header whether to skip the first line
+         * @return this builder
+         */
+        public Builder withHeader(boolean header) {
+            this.header = header;
+            return this;
+        }
+
+        /**
+         * Set the delimiter of the fields of the input and output.  The
+         * default is a comma.
+         * @param delimiter the delimiter
+         * @return this builder
+         */
+        public Builder withDelimiter(char delimiter) {
+            this.delimiter = delimiter;
+            return this;
+        }
+
+        /**
+         * Configure the solver, given a builder which already has the
+         * transactions of the series.  The configuration is applied from
+         * several threads.
+         * @param configure configures the solver
+         * @return this builder
+         */
+        public Builder withConfiguration(UnaryOperator<Xirr.Builder> configure) {
+            this.configure = configure;
+            return this;
+        }
+
+        public BulkRunner build() {
+            return new BulkRunner(threads, batchSize, queueCapacity, header, delimiter, configure);
+        }
+    }
+
+    private static DayCountConvention convention(String name) {
+        switch (name) {
+            case "ACT/365":
+                return DayCountConvention.ACT_365;
+            case "ACT/360":
+                return DayCountConvention.ACT_360;
+            case "ACT/ACT":
+                return DayCountConvention.ACT_ACT;
+            case "30/360":
+                return DayCountConvention.THIRTY_360;
+            default:
+                throw new IllegalArgumentException("Unknown day count convention: " + name);
+        }
+    }
+
+    public static void main(String... args) throws IOException, InterruptedException {
+        final Builder builder = builder();
+        DayCountConvention convention = DayCountConvention.ACT_365;
+        boolean logSpace = false;
+        boolean fast = false;
+        int i = 0;
+        for (; i < args.length && args[i].startsWith("--"); i++) {
+            switch (args[i]) {
+                case "--threads":
+                    builder.withThreads(Integer.parseInt(args[++i]));
+                    break;
+                case "--batch":
+                    builder.withBatchSize(Integer.parseInt(args[++i]));
+                    break;
+                case "--queue":
+                    builder.withQueueCapacity(Integer.parseInt(args[++i]));
+                    break;
+                case "--header":
+                    builder.withHeader(true);
+                    break;
+                case "--delimiter":
+                    builder.withDelimiter(args[++i].charAt(0));
+                    break;
+                case "--convention":
+                    convention = convention(args[++i]);
+                    break;
+                case "--log-space":
+                    logSpace = true;
+                    break;
+                case "--fast":
+                    fast = true;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        if (args.length - i != 2) {
+            System.err.println("Usage: BulkRunner [options] input output");
+            System.exit(1);
+        }
+        final DayCountConvention dayCount = convention;
+        final boolean log = logSpace;
+        final boolean approximate = fast;
+        builder.withConfiguration(b -> b.withDayCountConvention(dayCount)
+            .withLogSpaceEvaluation(log)
+            .withFastApproximation(approximate));
+        final Statistics statistics = builder.build().run(Paths.get(args[i]), Paths.get(args[i + 1]));
+        System.err.println(statistics);
+    }
+}
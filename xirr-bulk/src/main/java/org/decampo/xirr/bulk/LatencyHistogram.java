@@ -0,0 +1,126 @@
+package org.decampo.xirr.bulk;
+
+import java.time.Duration;
+
+/**
+ * Fixed-size histogram of latencies in nanoseconds, accurate to about 3%, so
+ * that percentiles may be reported for any number of samples in constant
+ * memory.  Latencies below 64 ns have a bucket each; above that each power of
+ * two is divided into 32 buckets.
+ * <p>
+ * Instances are not thread-safe; each thread should record into its own
+ * histogram and the histograms be merged with {@link #add(LatencyHistogram)}.
+ */
+public class LatencyHistogram {
+    private static final int LINEAR = 64;
+    private static final int SUB_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int LINEAR_BITS = 6;
+
+    private final long[] counts = new long[LINEAR + (63 - LINEAR_BITS) * SUB_BUCKETS];
+    private long count;
+    private long total;
+    private long max;
+
+    /**
+     * Record a latency.
+     * @param nanos the latency in nanoseconds, negative values count as zero
+     */
+    public void record(long nanos) {
+        nanos = Math.max(0, nanos);
+        counts[bucket(nanos)]++;
+        count++;
+        total += nanos;
+        max = Math.max(max, nanos);
+    }
+
+    /**
+     * Add the samples of the given histogram to this one.
+     * @param other the other histogram
+     */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        count += other.count;
+        total += other.total;
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * The number of latencies recorded.
+     * @return the number of latencies recorded
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * The mean latency.
+     * @return the mean latency, zero if none was recorded
+     */
+    public Duration getMean() {
+        return Duration.ofNanos(count > 0 ? total / count : 0);
+    }
+
+    /**
+     * The largest latency.
+     * @return the largest latency, zero if none was recorded
+     */
+    public Duration getMax() {
+        return Duration.ofNanos(max);
+    }
+
+    /**
+     * The latency below which the given fraction of the latencies fall.
+     * @param p the fraction, from 0 to 1
+     * @return the percentile, zero if no latency was recorded
+     * @throws IllegalArgumentException if p is not between 0 and 1
+     */
+    public Duration percentile(double p) {
+        if (!(0 <= p && p <= 1)) {
+            throw new IllegalArgumentException("Percentile must be between 0 and 1: " + p);
+        }
+        if (count == 0) {
+            return Duration.ZERO;
+        }
+        final long rank = Math.max(1, (long) Math.ceil(p * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Duration.ofNanos(Math.min(max, upperBound(i)));
+            }
+        }
+        return Duration.ofNanos(max);
+    }
+
+    private static int bucket(final long nanos) {
+        if (nanos < LINEAR) {
+            return (int) nanos;
+        }
+        final int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        final int sub = (int) (nanos >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return LINEAR + (exponent - LINEAR_BITS) * SUB_BUCKETS + sub;
+    }
+
+    private static long upperBound(final int bucket) {
+        if (bucket < LINEAR) {
+            return bucket;
+        }
+        final int exponent = (bucket - LINEAR) / SUB_BUCKETS + LINEAR_BITS;
+        final long sub = (bucket - LINEAR) % SUB_BUCKETS;
+        return (1L << exponent) + ((sub + 1) << (exponent - SUB_BITS)) - 1;
+    }
+
+    @Override
+    public String toString() {
+        return '{'
+            + "count=" + count
+            + ", mean=" + getMean()
+            + ", p50=" + percentile(0.5)
+            + ", p90=" + percentile(0.9)
+            + ", p99=" + percentile(0.99)
+            + ", max=" + getMax() + '}';
+    }
+}
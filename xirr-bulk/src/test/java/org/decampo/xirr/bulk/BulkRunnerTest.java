@@ -0,0 +1,107 @@
+package org.decampo.xirr.bulk;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import org.decampo.xirr.Transaction;
+import org.decampo.xirr.Xirr;
+import org.junit.Test;
+
+import static org.decampo.xirr.NewtonRaphson.TOLERANCE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BulkRunnerTest {
+
+    private static final String INPUT = "id,date,amount\n"
+        + "a,2016-01-15,-1000\n"
+        + "a,2016-02-08,-2500\n"
+        + "a,2016-04-17,-1000\n"
+        + "a,2016-08-24,5050\n"
+        + "\n"
+        + "b,2010-01-01,-1000\n"
+        + "b,2011-01-01,-1000\n"
+        + "c,2010-01-01,-1000\n"
+        + "c,not-a-date,1100\n"
+        + "d,2010-01-01,-1000\n"
+        + "d,2011-01-01,1100\n";
+
+    @Test
+    public void run_in_order() throws Exception {
+        final StringWriter out = new StringWriter();
+        final BulkRunner.Statistics statistics = BulkRunner.builder()
+            .withThreads(3)
+            .withBatchSize(1)
+            .withQueueCapacity(1)
+            .withHeader(true)
+            .build()
+            .run(new BufferedReader(new StringReader(INPUT)), out);
+
+        final String[] lines = out.toString().split("\n");
+        assertEquals(4, lines.length);
+        final double expected = new Xirr(
+            new Transaction(-1000, "2016-01-15"),
+            new Transaction(-2500, "2016-02-08"),
+            new Transaction(-1000, "2016-04-17"),
+            new Transaction(5050, "2016-08-24")).xirr();
+        assertTrue(lines[0].startsWith("a,"));
+        assertEquals(expected, Double.parseDouble(lines[0].substring(2)), TOLERANCE);
+        assertTrue(lines[1], lines[1].startsWith("b,,\"IllegalArgumentException"));
+        assertTrue(lines[2], lines[2].startsWith("c,,\"Malformed row at line 10"));
+        assertTrue(lines[3].startsWith("d,"));
+        assertEquals(0.1, Double.parseDouble(lines[3].substring(2)), TOLERANCE);
+
+        assertEquals(10, statistics.getRows());
+        assertEquals(4, statistics.getSeries());
+        assertEquals(2, statistics.getConverged());
+        assertEquals(2, statistics.getFailed());
+        assertEquals(3, statistics.getSolveLatency().getCount());
+        assertEquals(4, statistics.getBatchLatency().getCount());
+    }
+
+    @Test
+    public void run_many_series() throws Exception {
+        final StringBuilder in = new StringBuilder();
+        for (int k = 0; k < 1000; k++) {
+            in.append(k).append(",2010-01-01,-1000\n")
+                .append(k).append(",2010-07-01,-").append(k).append('\n')
+                .append(k).append(",2012-01-01,").append(2000 + k).append('\n');
+        }
+        final StringWriter out = new StringWriter();
+        final BulkRunner.Statistics statistics = BulkRunner.builder()
+            .withBatchSize(7)
+            .withQueueCapacity(2)
+            .withConfiguration(b -> b.withLogSpaceEvaluation(true))
+            .build()
+            .run(new BufferedReader(new StringReader(in.toString())), out);
+        final String[] lines = out.toString().split("\n");
+        assertEquals(1000, lines.length);
+        for (int k = 0; k < lines.length; k++) {
+            assertTrue(lines[k].startsWith(k + ","));
+        }
+        assertEquals(1000, statistics.getConverged());
+        assertEquals(3000, statistics.getRows());
+    }
+
+    @Test
+    public void ids_are_quoted() throws Exception {
+        final String in = "a,1;2010-01-01;-1000\n"
+            + "a,1;2011-01-01;1100\n"
+            + "say \"b\";2010-01-01;-1000\n"
+            + "say \"b\";2011-01-01;1100\n"
+            + "c;2010-01-01;-1000\n"
+            + "c;2011-01-01;1100\n";
+        final StringWriter out = new StringWriter();
+        BulkRunner.builder()
+            .withDelimiter(';')
+            .build()
+            .run(new BufferedReader(new StringReader(in)), out);
+        final String[] lines = out.toString().split("\n");
+        assertEquals(3, lines.length);
+        final String[] ids = {"a,1;", "\"say \"\"b\"\"\";", "c;"};
+        for (int k = 0; k < ids.length; k++) {
+            assertTrue(lines[k], lines[k].startsWith(ids[k]));
+            assertEquals(0.1, Double.parseDouble(lines[k].substring(ids[k].length())), TOLERANCE);
+        }
+    }
+}
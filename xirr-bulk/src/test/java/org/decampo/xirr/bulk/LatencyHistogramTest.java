@@ -0,0 +1,37 @@
+package org.decampo.xirr.bulk;
+
+import java.time.Duration;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void percentiles_within_three_percent() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        for (long nanos = 1; nanos <= 100_000; nanos++) {
+            histogram.record(nanos * 1000);
+        }
+        assertEquals(100_000, histogram.getCount());
+        assertEquals(Duration.ofMillis(100), histogram.getMax());
+        assertEquals(50e6, histogram.percentile(0.5).toNanos(), 50e6 * 0.03);
+        assertEquals(99e6, histogram.percentile(0.99).toNanos(), 99e6 * 0.03);
+        assertEquals(Duration.ofMillis(100), histogram.percentile(1));
+    }
+
+    @Test
+    public void add() {
+        final LatencyHistogram a = new LatencyHistogram();
+        final LatencyHistogram b = new LatencyHistogram();
+        a.record(10);
+        b.record(30);
+        b.record(-5);
+        a.add(b);
+        assertEquals(3, a.getCount());
+        assertEquals(Duration.ofNanos(13), a.getMean());
+        assertEquals(Duration.ofNanos(10), a.percentile(0.5));
+        assertTrue(a.percentile(0).toNanos() <= 10);
+    }
+}